@@ -15,6 +15,8 @@
  */
 package org.traccar;
 
+import java.util.ArrayList;
+import java.util.List;
 import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.ChannelHandlerContext;
 import org.jboss.netty.handler.codec.oneone.OneToOneDecoder;
@@ -27,6 +29,13 @@ public abstract class BaseDataHandler extends OneToOneDecoder {
 
         if (msg instanceof Position) {
             return handlePosition((Position) msg);
+        } else if (msg instanceof PositionBatch) {
+            PositionBatch batch = (PositionBatch) msg;
+            PositionBatch result = handleBatch(batch);
+            if (result == null && batch.getResponse() != null) {
+                batch.getResponse().send(); // nothing left to store
+            }
+            return result;
         }
 
         return msg;
@@ -34,4 +43,21 @@ public abstract class BaseDataHandler extends OneToOneDecoder {
 
     protected abstract Position handlePosition(Position position);
 
+    /**
+     * Handle positions one by one, dropping filtered ones. Override to process the whole batch at once.
+     */
+    protected PositionBatch handleBatch(PositionBatch batch) {
+        List<Position> result = new ArrayList<>(batch.size());
+        for (Position position : batch) {
+            Position handledPosition = handlePosition(position);
+            if (handledPosition != null) {
+                result.add(handledPosition);
+            }
+        }
+        if (result.isEmpty()) {
+            return null;
+        }
+        return new PositionBatch(result, batch.getResponse());
+    }
+
 }
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2015 Anton Tananaev (anton.tananaev@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.handler.codec.frame.FrameDecoder;
+
+/**
+ * Frame decoder returning slices of received data instead of copies.
+ * Cumulation buffer content is never modified in place, so slices stay valid after decoding.
+ */
+public abstract class BaseFrameDecoder extends FrameDecoder {
+
+    protected ChannelBuffer readFrame(ChannelBuffer buf, int length) {
+        return buf.readSlice(length);
+    }
+
+    /**
+     * Read frame with length field, frame length is offset, field length, field value and adjustment combined
+     */
+    protected ChannelBuffer readFrame(
+            ChannelBuffer buf, int lengthFieldOffset, int lengthFieldLength, int lengthAdjustment) {
+
+        if (buf.readableBytes() < lengthFieldOffset + lengthFieldLength) {
+            return null;
+        }
+
+        int index = buf.readerIndex() + lengthFieldOffset;
+        long length;
+        switch (lengthFieldLength) {
+            case 1:
+                length = buf.getUnsignedByte(index);
+                break;
+            case 2:
+                length = buf.getUnsignedShort(index);
+                break;
+            case 3:
+                length = buf.getUnsignedMedium(index);
+                break;
+            case 4:
+                length = buf.getUnsignedInt(index);
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported length field size " + lengthFieldLength);
+        }
+
+        length += lengthFieldOffset + lengthFieldLength + lengthAdjustment;
+        if (length > 0 && buf.readableBytes() >= length) {
+            return buf.readSlice((int) length);
+        }
+
+        return null;
+    }
+
+}
@@ -19,6 +19,7 @@ import java.net.InetSocketAddress;
 import org.jboss.netty.buffer.ChannelBuffer;
 import org.jboss.netty.buffer.ChannelBuffers;
 import org.jboss.netty.channel.ChannelEvent;
+import org.jboss.netty.channel.ChannelHandler;
 import org.jboss.netty.channel.ChannelHandlerContext;
 import org.jboss.netty.channel.ChannelPipeline;
 import org.jboss.netty.channel.ChannelPipelineFactory;
@@ -27,19 +28,33 @@ import org.jboss.netty.channel.Channels;
 import org.jboss.netty.channel.DownstreamMessageEvent;
 import org.jboss.netty.channel.MessageEvent;
 import org.jboss.netty.channel.SimpleChannelHandler;
+import org.jboss.netty.handler.execution.ExecutionHandler;
 import org.jboss.netty.handler.logging.LoggingHandler;
 import org.jboss.netty.handler.timeout.IdleStateHandler;
 import org.traccar.helper.Log;
 
 public abstract class BasePipelineFactory implements ChannelPipelineFactory {
 
-    private final TrackerServer server;
-    private final int resetDelay;
+    private static final int DEFAULT_DATAGRAM_QUEUE = 10000;
 
+    private final TrackerServer server;
+    private final String protocol;
+    private final int datagramThreads;
+    private final int datagramQueue;
+
+    private IdleStateHandler idleHandler;
+    private final OpenChannelHandler openHandler;
+    private StandardLoggingHandler loggingHandler;
+    private ExecutionHandler executionHandler;
     private FilterHandler filterHandler;
     private DistanceHandler distanceHandler;
     private ReverseGeocoderHandler reverseGeocoderHandler;
+    private final RemoteAddressHandler remoteAddressHandler;
+    private DefaultDataHandler dataHandler;
+    private WebDataHandler webHandler;
+    private final MainEventHandler mainHandler;
 
+    @ChannelHandler.Sharable
     private static class OpenChannelHandler extends SimpleChannelHandler {
 
         private final TrackerServer server;
@@ -52,8 +67,17 @@ public abstract class BasePipelineFactory implements ChannelPipelineFactory {
         public void channelOpen(ChannelHandlerContext ctx, ChannelStateEvent e) {
             server.getChannelGroup().add(e.getChannel());
         }
+
+        @Override
+        public void channelConnected(ChannelHandlerContext ctx, ChannelStateEvent e) throws Exception {
+            if (ReadThrottle.isPaused()) {
+                ReadThrottle.update(e.getChannel());
+            }
+            super.channelConnected(ctx, e);
+        }
     }
 
+    @ChannelHandler.Sharable
     private static class StandardLoggingHandler extends LoggingHandler {
 
         @Override
@@ -90,8 +114,39 @@ public abstract class BasePipelineFactory implements ChannelPipelineFactory {
 
     public BasePipelineFactory(TrackerServer server, String protocol) {
         this.server = server;
+        this.protocol = protocol;
+
+        int resetDelay = Context.getConfig().getInteger(protocol + ".resetDelay", 0);
+        if (resetDelay != 0) {
+            idleHandler = new IdleStateHandler(GlobalTimer.getTimer(), resetDelay, 0, 0);
+        }
 
-        resetDelay = Context.getConfig().getInteger(protocol + ".resetDelay", 0);
+        openHandler = new OpenChannelHandler(server);
+
+        if (Context.isLoggerEnabled()) {
+            loggingHandler = new StandardLoggingHandler();
+        }
+
+        int executorThreads = Context.getConfig().getInteger(
+                protocol + ".executorThreads", Context.getConfig().getInteger("executor.threads"));
+        if (executorThreads > 0) {
+            int channelQueueSize = Context.getConfig().getInteger(
+                    protocol + ".executorChannelQueue", Context.getConfig().getInteger("executor.channelQueue"));
+            int queueSize = Context.getConfig().getInteger(
+                    protocol + ".executorQueue", Context.getConfig().getInteger("executor.queue"));
+            executionHandler = new ExecutionHandler(
+                    new DeviceOrderedExecutor(protocol, executorThreads, channelQueueSize, queueSize));
+        }
+
+        if (server.isConnectionless()) {
+            datagramThreads = Context.getConfig().getInteger(
+                    protocol + ".udpThreads", Context.getConfig().getInteger("udp.threads"));
+            datagramQueue = Context.getConfig().getInteger(
+                    protocol + ".udpQueue", Context.getConfig().getInteger("udp.queue", DEFAULT_DATAGRAM_QUEUE));
+        } else {
+            datagramThreads = 0;
+            datagramQueue = 0;
+        }
 
         if (Context.getConfig().getBoolean("filter.enable")) {
             filterHandler = new FilterHandler();
@@ -105,21 +160,58 @@ public abstract class BasePipelineFactory implements ChannelPipelineFactory {
         if (Context.getConfig().getBoolean("distance.enable")) {
             distanceHandler = new DistanceHandler();
         }
+
+        remoteAddressHandler = new RemoteAddressHandler();
+
+        if (Context.getDataManager() != null) {
+            dataHandler = new DefaultDataHandler();
+        }
+
+        if (Context.getConfig().getBoolean("forward.enable")) {
+            webHandler = new WebDataHandler(Context.getConfig().getString("forward.url"));
+        }
+
+        mainHandler = new MainEventHandler();
     }
 
     protected abstract void addSpecificHandlers(ChannelPipeline pipeline);
 
+    public void release() {
+        if (executionHandler != null) {
+            executionHandler.releaseExternalResources();
+        }
+    }
+
+    /**
+     * With several datagram threads the bound channel pipeline only dispatches datagrams and writes to lane pipelines
+     */
     @Override
     public ChannelPipeline getPipeline() {
+        if (datagramThreads > 1) {
+            ChannelPipeline pipeline = Channels.pipeline();
+            pipeline.addLast("dispatcher", new DatagramDispatcher(protocol, this, datagramThreads, datagramQueue));
+            return pipeline;
+        }
+        return createPipeline();
+    }
+
+    public ChannelPipeline createPipeline() {
         ChannelPipeline pipeline = Channels.pipeline();
-        if (resetDelay != 0) {
-            pipeline.addLast("idleHandler", new IdleStateHandler(GlobalTimer.getTimer(), resetDelay, 0, 0));
+        if (idleHandler != null) {
+            pipeline.addLast("idleHandler", idleHandler);
         }
-        pipeline.addLast("openHandler", new OpenChannelHandler(server));
-        if (Context.isLoggerEnabled()) {
-            pipeline.addLast("logger", new StandardLoggingHandler());
+        pipeline.addLast("openHandler", openHandler);
+        if (loggingHandler != null) {
+            pipeline.addLast("logger", loggingHandler);
         }
         addSpecificHandlers(pipeline);
+        if (executionHandler != null) {
+            if (pipeline.get("objectDecoder") != null) {
+                pipeline.addAfter("objectDecoder", "executionHandler", executionHandler);
+            } else {
+                pipeline.addLast("executionHandler", executionHandler);
+            }
+        }
         if (filterHandler != null) {
             pipeline.addLast("filter", filterHandler);
         }
@@ -129,14 +221,14 @@ public abstract class BasePipelineFactory implements ChannelPipelineFactory {
         if (reverseGeocoderHandler != null) {
             pipeline.addLast("geocoder", reverseGeocoderHandler);
         }
-        pipeline.addLast("remoteAddress", new RemoteAddressHandler());
-        if (Context.getDataManager() != null) {
-            pipeline.addLast("dataHandler", new DefaultDataHandler());
+        pipeline.addLast("remoteAddress", remoteAddressHandler);
+        if (dataHandler != null) {
+            pipeline.addLast("dataHandler", dataHandler);
         }
-        if (Context.getConfig().getBoolean("forward.enable")) {
-            pipeline.addLast("webHandler", new WebDataHandler(Context.getConfig().getString("forward.url")));
+        if (webHandler != null) {
+            pipeline.addLast("webHandler", webHandler);
         }
-        pipeline.addLast("mainHandler", new MainEventHandler());
+        pipeline.addLast("mainHandler", mainHandler);
         return pipeline;
     }
 
@@ -16,7 +16,10 @@
 package org.traccar;
 
 import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
 
 import org.jboss.netty.channel.Channel;
 import org.traccar.helper.Log;
@@ -70,8 +73,47 @@ public abstract class BaseProtocolDecoder extends ExtendedObjectDecoder {
         return identify(uniqueId, channel, null, true);
     }
 
+    private final boolean durableAck;
+
     public BaseProtocolDecoder(Protocol protocol) {
         this.protocol = protocol;
+        durableAck = Context.getDataManager() != null
+                && Context.getConfig().getBoolean(protocol.getName() + ".durableAck");
+    }
+
+    /**
+     * Protocols acknowledging positions through {@link #acknowledge} can defer responses until positions are stored
+     */
+    protected boolean isDurableAckSupported() {
+        return false;
+    }
+
+    public boolean isDurableAck() {
+        return durableAck && isDurableAckSupported();
+    }
+
+    public Object acknowledge(Channel channel, SocketAddress remoteAddress, Object response, Position position) {
+        Object result = acknowledge(channel, remoteAddress, response, Collections.singletonList(position));
+        if (result instanceof PositionBatch) {
+            return result;
+        }
+        return position;
+    }
+
+    /**
+     * Send response to positions and return them as decoded message. With durable acknowledgement
+     * positions are returned as a batch carrying the response, which is sent only after they are stored.
+     */
+    public Object acknowledge(
+            Channel channel, SocketAddress remoteAddress, Object response, List<Position> positions) {
+        if (channel != null) {
+            if (isDurableAck() && !positions.isEmpty()) {
+                return new PositionBatch(
+                        new ArrayList<>(positions), new DeferredResponse(channel, remoteAddress, response));
+            }
+            channel.write(response, remoteAddress);
+        }
+        return positions;
     }
 
     public void getLastLocation(Position position, Date deviceTime) {
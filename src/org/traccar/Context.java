@@ -20,6 +20,9 @@ import org.traccar.database.ConnectionManager;
 import org.traccar.database.DataManager;
 import org.traccar.database.IdentityManager;
 import org.traccar.database.PermissionsManager;
+import org.traccar.database.PositionSpool;
+import org.traccar.database.PositionWriter;
+import org.traccar.geocode.AddressCache;
 import org.traccar.geocode.BingMapsReverseGeocoder;
 import org.traccar.geocode.FactualReverseGeocoder;
 import org.traccar.geocode.GisgraphyReverseGeocoder;
@@ -60,6 +63,18 @@ public final class Context {
         return dataManager;
     }
 
+    private static PositionSpool positionSpool;
+
+    public static PositionSpool getPositionSpool() {
+        return positionSpool;
+    }
+
+    private static PositionWriter positionWriter;
+
+    public static PositionWriter getPositionWriter() {
+        return positionWriter;
+    }
+
     private static ConnectionManager connectionManager;
 
     public static ConnectionManager getConnectionManager() {
@@ -113,33 +128,42 @@ public final class Context {
         }
         identityManager = dataManager;
 
+        if (dataManager != null && config.getBoolean("spool.enable")) {
+            positionSpool = new PositionSpool(dataManager, config);
+        }
+
+        if (dataManager != null && config.getBoolean("writer.enable")) {
+            positionWriter = new PositionWriter(dataManager, positionSpool, config);
+        }
+
         if (config.getBoolean("geocoder.enable")) {
             String type = config.getString("geocoder.type", "google");
             String url = config.getString("geocoder.url");
             String key = config.getString("geocoder.key");
 
             int cacheSize = config.getInteger("geocoder.cacheSize");
+            int cachePrecision = config.getInteger("geocoder.cachePrecision", AddressCache.DEFAULT_PRECISION);
             switch (type) {
                 case "nominatim":
-                    reverseGeocoder = new NominatimReverseGeocoder(url, cacheSize);
+                    reverseGeocoder = new NominatimReverseGeocoder(url, cacheSize, cachePrecision);
                     break;
                 case "gisgraphy":
-                    reverseGeocoder = new GisgraphyReverseGeocoder(url, cacheSize);
+                    reverseGeocoder = new GisgraphyReverseGeocoder(url, cacheSize, cachePrecision);
                     break;
                 case "mapquest":
-                    reverseGeocoder = new MapQuestReverseGeocoder(url, key, cacheSize);
+                    reverseGeocoder = new MapQuestReverseGeocoder(url, key, cacheSize, cachePrecision);
                     break;
                 case "opencage":
-                    reverseGeocoder = new OpenCageReverseGeocoder(url, key, cacheSize);
+                    reverseGeocoder = new OpenCageReverseGeocoder(url, key, cacheSize, cachePrecision);
                     break;
                 case "bingmaps":
-                    reverseGeocoder = new BingMapsReverseGeocoder(url, key, cacheSize);
+                    reverseGeocoder = new BingMapsReverseGeocoder(url, key, cacheSize, cachePrecision);
                     break;
                 case "factual":
-                    reverseGeocoder = new FactualReverseGeocoder(url, key, cacheSize);
+                    reverseGeocoder = new FactualReverseGeocoder(url, key, cacheSize, cachePrecision);
                     break;
                 default:
-                    reverseGeocoder = new GoogleReverseGeocoder(cacheSize);
+                    reverseGeocoder = new GoogleReverseGeocoder(cacheSize, cachePrecision);
                     break;
             }
         }
@@ -163,4 +187,12 @@ public final class Context {
         identityManager = testIdentityManager;
     }
 
+    public static void init(Config testConfig, DataManager testDataManager, PositionWriter testPositionWriter) {
+        config = testConfig;
+        connectionManager = new ConnectionManager(null);
+        dataManager = testDataManager;
+        identityManager = testDataManager;
+        positionWriter = testPositionWriter;
+    }
+
 }
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2015 Anton Tananaev (anton.tananaev@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.ChannelPipeline;
+import org.jboss.netty.channel.ChannelStateEvent;
+import org.jboss.netty.channel.MessageEvent;
+import org.jboss.netty.channel.SimpleChannelHandler;
+import org.traccar.helper.Log;
+
+/**
+ * Distributes received datagrams between several independent pipelines by source address.
+ * Decoders keep per-device state, so each lane has its own pipeline and a single thread,
+ * which also preserves order of messages from the same address.
+ * Lane queues are bounded, datagrams arriving to a full lane are dropped and counted.
+ * Bound channel pipeline has no encoders, so writes are passed down through the lane of the remote address.
+ */
+public class DatagramDispatcher extends SimpleChannelHandler {
+
+    private static final AtomicLong DROPPED = new AtomicLong();
+
+    private static final RejectedExecutionHandler DROP_HANDLER = new RejectedExecutionHandler() {
+        @Override
+        public void rejectedExecution(Runnable runnable, ThreadPoolExecutor executor) {
+            if (DROPPED.incrementAndGet() % 1000 == 1) {
+                Log.warning("Datagram queue is full, dropped " + DROPPED.get() + " datagrams");
+            }
+        }
+    };
+
+    private final ChannelPipeline[] lanes;
+    private final ExecutorService[] executors;
+
+    public DatagramDispatcher(final String name, BasePipelineFactory pipelineFactory, int threads, int queueSize) {
+        lanes = new ChannelPipeline[threads];
+        executors = new ExecutorService[threads];
+        for (int i = 0; i < threads; i++) {
+            lanes[i] = pipelineFactory.createPipeline();
+            final String threadName = name + "-udp-" + (i + 1);
+            executors[i] = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<Runnable>(queueSize), new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    return new Thread(runnable, threadName);
+                }
+            }, DROP_HANDLER);
+        }
+    }
+
+    /**
+     * Number of datagrams dropped by all dispatchers because lane queue was full
+     */
+    public static long getDroppedCount() {
+        return DROPPED.get();
+    }
+
+    private int getLane(SocketAddress remoteAddress) {
+        int hash = 0;
+        if (remoteAddress instanceof InetSocketAddress) {
+            hash = remoteAddress.hashCode();
+        }
+        return (hash & Integer.MAX_VALUE) % lanes.length;
+    }
+
+    @Override
+    public void channelOpen(ChannelHandlerContext ctx, ChannelStateEvent e) throws Exception {
+        for (ChannelPipeline lane : lanes) {
+            lane.attach(e.getChannel(), ctx.getPipeline().getSink());
+        }
+        super.channelOpen(ctx, e);
+    }
+
+    @Override
+    public void channelClosed(ChannelHandlerContext ctx, ChannelStateEvent e) throws Exception {
+        for (ExecutorService executor : executors) {
+            executor.shutdown();
+        }
+        super.channelClosed(ctx, e);
+    }
+
+    @Override
+    public void messageReceived(ChannelHandlerContext ctx, final MessageEvent e) {
+        int index = getLane(e.getRemoteAddress());
+        final ChannelPipeline lane = lanes[index];
+        executors[index].execute(new Runnable() {
+            @Override
+            public void run() {
+                lane.sendUpstream(e);
+            }
+        });
+    }
+
+    @Override
+    public void writeRequested(ChannelHandlerContext ctx, MessageEvent e) {
+        lanes[getLane(e.getRemoteAddress())].sendDownstream(e);
+    }
+
+}
@@ -15,18 +15,50 @@
  */
 package org.traccar;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.jboss.netty.channel.ChannelHandler;
 import org.traccar.helper.Log;
 import org.traccar.model.Position;
 
+@ChannelHandler.Sharable
 public class DefaultDataHandler extends BaseDataHandler {
 
+    private void spool(Position position) {
+        if (Context.getPositionSpool() == null || !Context.getPositionSpool().write(position)) {
+            Log.warning("Position from " + position.getDeviceId() + " lost");
+        }
+    }
+
+    private boolean isLatest(Position position) {
+        Position lastPosition = Context.getConnectionManager().getLastPosition(position.getDeviceId());
+        return !Context.getConnectionManager().isLatestWriteBehind()
+                && (lastPosition == null || position.getFixTime().compareTo(lastPosition.getFixTime()) > 0);
+    }
+
     @Override
     protected Position handlePosition(Position position) {
 
+        boolean latest = isLatest(position);
+
+        if (Context.getPositionWriter() != null) {
+            if (!Context.getPositionWriter().write(position, latest)) {
+                Log.warning("Position writer queue is full");
+                spool(position);
+            }
+            return position;
+        }
+
         try {
             Context.getDataManager().addPosition(position);
-            Position lastPosition = Context.getConnectionManager().getLastPosition(position.getDeviceId());
-            if (lastPosition == null || position.getFixTime().compareTo(lastPosition.getFixTime()) > 0) {
+        } catch (Exception error) {
+            Log.warning(error);
+            spool(position);
+            return position;
+        }
+
+        try {
+            if (latest) {
                 Context.getDataManager().updateLatestPosition(position);
             }
         } catch (Exception error) {
@@ -36,4 +68,79 @@ public class DefaultDataHandler extends BaseDataHandler {
         return position;
     }
 
+    /**
+     * Queue positions for the writer, deferred response is sent after the writer stores all of them
+     */
+    private PositionBatch writeBatch(PositionBatch batch) {
+        boolean[] latest = new boolean[batch.size()];
+        int index = 0;
+        for (Position position : batch) {
+            latest[index++] = isLatest(position);
+        }
+        if (!Context.getPositionWriter().write(batch, latest)) {
+            Log.warning("Position writer queue is full");
+            batch.getResponse().fail();
+            return null;
+        }
+        return batch;
+    }
+
+    /**
+     * Store all positions in one batch, latest position is updated once per device.
+     * Positions with deferred response are not spooled on failure, device retransmits them instead.
+     */
+    @Override
+    protected PositionBatch handleBatch(PositionBatch batch) {
+
+        if (Context.getPositionWriter() != null) {
+            if (batch.getResponse() != null) {
+                return writeBatch(batch);
+            }
+            return super.handleBatch(batch);
+        }
+
+        try {
+            Context.getDataManager().addPositions(batch.getPositions());
+        } catch (Exception error) {
+            Log.warning(error);
+            if (batch.getResponse() != null) {
+                batch.getResponse().fail();
+                return null;
+            }
+            for (Position position : batch) {
+                spool(position);
+            }
+            return batch;
+        }
+
+        if (batch.getResponse() != null) {
+            batch.getResponse().send();
+        }
+
+        if (!Context.getConnectionManager().isLatestWriteBehind()) {
+            Map<Long, Position> latestPositions = new LinkedHashMap<>();
+            for (Position position : batch) {
+                if (position.getId() == 0) {
+                    continue; // key is not known if driver doesn't return generated keys for batches
+                }
+                Position lastPosition = latestPositions.get(position.getDeviceId());
+                if (lastPosition == null) {
+                    lastPosition = Context.getConnectionManager().getLastPosition(position.getDeviceId());
+                }
+                if (lastPosition == null || position.getFixTime().compareTo(lastPosition.getFixTime()) > 0) {
+                    latestPositions.put(position.getDeviceId(), position);
+                }
+            }
+            try {
+                if (!latestPositions.isEmpty()) {
+                    Context.getDataManager().updateLatestPositions(latestPositions.values());
+                }
+            } catch (Exception error) {
+                Log.warning(error);
+            }
+        }
+
+        return batch;
+    }
+
 }
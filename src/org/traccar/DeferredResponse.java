@@ -0,0 +1,72 @@
+/*
+ * Copyright 2015 Anton Tananaev (anton.tananaev@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar;
+
+import java.net.SocketAddress;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.jboss.netty.channel.Channel;
+import org.traccar.helper.Log;
+
+/**
+ * Response to a device that is held back until positions from the message are stored.
+ * Response is sent at most once, a failed response is never sent and the device is expected to retransmit.
+ */
+public class DeferredResponse {
+
+    private final Channel channel;
+    private final SocketAddress remoteAddress;
+    private final Object response;
+
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicBoolean done = new AtomicBoolean();
+
+    public DeferredResponse(Channel channel, SocketAddress remoteAddress, Object response) {
+        this.channel = channel;
+        this.remoteAddress = remoteAddress;
+        this.response = response;
+    }
+
+    public boolean isDone() {
+        return done.get();
+    }
+
+    /**
+     * Register positions stored separately, response is sent when all of them are completed
+     */
+    public void expect(int count) {
+        pending.addAndGet(count);
+    }
+
+    public void complete() {
+        if (pending.decrementAndGet() == 0) {
+            send();
+        }
+    }
+
+    public void send() {
+        if (done.compareAndSet(false, true)) {
+            channel.write(response, remoteAddress);
+        }
+    }
+
+    public void fail() {
+        if (done.compareAndSet(false, true)) {
+            Log.warning("Response to " + remoteAddress + " withheld, positions are not stored");
+        }
+    }
+
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2015 Anton Tananaev (anton.tananaev@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelEvent;
+import org.jboss.netty.channel.MessageEvent;
+import org.jboss.netty.handler.execution.ChannelEventRunnable;
+import org.jboss.netty.handler.execution.OrderedMemoryAwareThreadPoolExecutor;
+import org.jboss.netty.util.ObjectSizeEstimator;
+import org.traccar.model.Position;
+
+/**
+ * Thread pool that preserves order of messages from the same device, limits are counted in messages.
+ * Channel queue limit suspends reading through {@link ReadThrottle} instead of changing channel readability directly,
+ * so it doesn't conflict with pausing all channels when persistence falls behind.
+ * <p>
+ * Devices are mapped to a fixed number of stripes, so the number of child executors stays bounded.
+ * Channel state events (open, close, idle) are ordered per channel, not per device, so they are not ordered
+ * relative to positions of the channel. Handlers after the executor must not rely on a position being processed
+ * before the close event of its channel.
+ */
+public class DeviceOrderedExecutor extends OrderedMemoryAwareThreadPoolExecutor {
+
+    private static final long KEEP_ALIVE_TIME = 60;
+
+    private static final int DEVICE_STRIPES = 4096;
+
+    private static final ObjectSizeEstimator MESSAGE_COUNTER = new ObjectSizeEstimator() {
+        @Override
+        public int estimateSize(Object o) {
+            return 1;
+        }
+    };
+
+    private final int channelQueueSize;
+    private final ConcurrentMap<Channel, AtomicInteger> channelCounters = new ConcurrentHashMap<>();
+
+    public DeviceOrderedExecutor(final String name, int threads, int channelQueueSize, int queueSize) {
+        super(threads, 0, queueSize, KEEP_ALIVE_TIME, TimeUnit.SECONDS, MESSAGE_COUNTER,
+                new ThreadFactory() {
+                    private final AtomicInteger index = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        return new Thread(runnable, name + "-executor-" + index.incrementAndGet());
+                    }
+                });
+        this.channelQueueSize = channelQueueSize;
+    }
+
+    private Channel getChannel(Runnable task) {
+        if (channelQueueSize > 0 && task instanceof ChannelEventRunnable && shouldCount(task)) {
+            return ((ChannelEventRunnable) task).getEvent().getChannel();
+        }
+        return null;
+    }
+
+    @Override
+    protected void increaseCounter(Runnable task) {
+        super.increaseCounter(task);
+        Channel channel = getChannel(task);
+        if (channel != null) {
+            AtomicInteger counter = channelCounters.get(channel);
+            if (counter == null) {
+                AtomicInteger newCounter = new AtomicInteger();
+                counter = channelCounters.putIfAbsent(channel, newCounter);
+                if (counter == null) {
+                    counter = newCounter;
+                }
+            }
+            if (counter.incrementAndGet() == channelQueueSize) {
+                ReadThrottle.suspend(channel);
+            }
+        }
+    }
+
+    @Override
+    protected void decreaseCounter(Runnable task) {
+        super.decreaseCounter(task);
+        Channel channel = getChannel(task);
+        if (channel != null) {
+            AtomicInteger counter = channelCounters.get(channel);
+            if (counter != null) {
+                int value = counter.decrementAndGet();
+                if (value == channelQueueSize - 1) {
+                    ReadThrottle.resume(channel);
+                }
+                if (value == 0) {
+                    channelCounters.remove(channel, counter);
+                }
+            }
+        }
+    }
+
+    /**
+     * Child executors of device keys are never removed, stripes keep their number bounded
+     */
+    private static Long getDeviceKey(long deviceId) {
+        return deviceId % DEVICE_STRIPES;
+    }
+
+    @Override
+    protected ConcurrentMap<Object, Executor> newChildExecutorMap() {
+        return new ConcurrentHashMap<>();
+    }
+
+    @Override
+    protected Object getChildExecutorKey(ChannelEvent e) {
+        if (e instanceof MessageEvent && ((MessageEvent) e).getMessage() instanceof Position) {
+            return getDeviceKey(((Position) ((MessageEvent) e).getMessage()).getDeviceId());
+        }
+        if (e instanceof MessageEvent && ((MessageEvent) e).getMessage() instanceof PositionBatch) {
+            // Batch comes from a single message, so normally from a single device
+            return getDeviceKey(((PositionBatch) ((MessageEvent) e).getMessage()).getPositions().get(0).getDeviceId());
+        }
+        return super.getChildExecutorKey(e);
+    }
+
+}
@@ -17,10 +17,14 @@ package org.traccar;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.util.HashMap;
+import java.util.Map;
+import org.jboss.netty.channel.ChannelHandler;
 import org.traccar.helper.DistanceCalculator;
 import org.traccar.model.Event;
 import org.traccar.model.Position;
 
+@ChannelHandler.Sharable
 public class DistanceHandler extends BaseDataHandler {
 
     private Position getLastPosition(long deviceId) {
@@ -31,10 +35,13 @@ public class DistanceHandler extends BaseDataHandler {
     }
 
     public Position calculateDistance(Position position) {
+        return calculateDistance(position, getLastPosition(position.getDeviceId()));
+    }
+
+    private Position calculateDistance(Position position, Position last) {
 
         double distance = 0.0;
 
-        Position last = getLastPosition(position.getDeviceId());
         if (last != null) {
             if (last.getAttributes().containsKey(Event.KEY_DISTANCE)) {
                 distance = ((Number) last.getAttributes().get(Event.KEY_DISTANCE)).doubleValue();
@@ -56,4 +63,23 @@ public class DistanceHandler extends BaseDataHandler {
         return calculateDistance(position);
     }
 
+    /**
+     * Earlier positions of the batch are not yet latest in connection manager, so they are tracked here
+     */
+    @Override
+    protected PositionBatch handleBatch(PositionBatch batch) {
+        Map<Long, Position> lastPositions = new HashMap<>();
+        for (Position position : batch) {
+            Position last = lastPositions.get(position.getDeviceId());
+            if (last == null) {
+                last = getLastPosition(position.getDeviceId());
+            }
+            calculateDistance(position, last);
+            if (last == null || position.getFixTime().compareTo(last.getFixTime()) > 0) {
+                lastPositions.put(position.getDeviceId(), position);
+            }
+        }
+        return batch;
+    }
+
 }
@@ -16,13 +16,16 @@
 package org.traccar;
 
 import java.net.SocketAddress;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.ChannelEvent;
 import org.jboss.netty.channel.ChannelHandlerContext;
 import org.jboss.netty.channel.ChannelUpstreamHandler;
 import org.jboss.netty.channel.Channels;
 import org.jboss.netty.channel.MessageEvent;
+import org.traccar.model.Position;
 
 public abstract class ExtendedObjectDecoder implements ChannelUpstreamHandler {
 
@@ -41,8 +44,13 @@ public abstract class ExtendedObjectDecoder implements ChannelUpstreamHandler {
             ctx.sendUpstream(evt);
         } else if (decodedMessage != null) {
             if (decodedMessage instanceof Collection) {
-                for (Object o : (Collection) decodedMessage) {
-                    Channels.fireMessageReceived(ctx, o, e.getRemoteAddress());
+                PositionBatch batch = createBatch((Collection) decodedMessage);
+                if (batch != null) {
+                    Channels.fireMessageReceived(ctx, batch, e.getRemoteAddress());
+                } else {
+                    for (Object o : (Collection) decodedMessage) {
+                        Channels.fireMessageReceived(ctx, o, e.getRemoteAddress());
+                    }
                 }
             } else {
                 Channels.fireMessageReceived(ctx, decodedMessage, e.getRemoteAddress());
@@ -50,6 +58,23 @@ public abstract class ExtendedObjectDecoder implements ChannelUpstreamHandler {
         }
     }
 
+    /**
+     * Multiple positions are passed as one batch, so they can be stored together
+     */
+    private static PositionBatch createBatch(Collection<?> messages) {
+        if (messages.size() < 2) {
+            return null;
+        }
+        List<Position> positions = new ArrayList<>(messages.size());
+        for (Object message : messages) {
+            if (!(message instanceof Position)) {
+                return null;
+            }
+            positions.add((Position) message);
+        }
+        return new PositionBatch(positions);
+    }
+
     protected abstract Object decode(Channel channel, SocketAddress remoteAddress, Object msg) throws Exception;
 
 }
@@ -15,10 +15,16 @@
  */
 package org.traccar;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.jboss.netty.channel.ChannelHandler;
 import org.traccar.helper.DistanceCalculator;
 import org.traccar.helper.Log;
 import org.traccar.model.Position;
 
+@ChannelHandler.Sharable
 public class FilterHandler extends BaseDataHandler {
 
     private static final long FILTER_FUTURE_LIMIT = 5 * 60 * 1000;
@@ -68,9 +74,8 @@ public class FilterHandler extends BaseDataHandler {
         return filterZero && position.getLatitude() == 0.0 && position.getLongitude() == 0.0;
     }
 
-    private boolean filterDuplicate(Position position) {
+    private boolean filterDuplicate(Position position, Position last) {
         if (filterDuplicate) {
-            Position last = getLastPosition(position.getDeviceId());
             if (last != null) {
                 return position.getFixTime().equals(last.getFixTime());
             } else {
@@ -85,9 +90,8 @@ public class FilterHandler extends BaseDataHandler {
         return filterFuture && position.getFixTime().getTime() > System.currentTimeMillis() + FILTER_FUTURE_LIMIT;
     }
 
-    private boolean filterDistance(Position position) {
+    private boolean filterDistance(Position position, Position last) {
         if (filterDistance != 0) {
-            Position last = getLastPosition(position.getDeviceId());
             if (last != null) {
                 double distance = DistanceCalculator.distance(
                         position.getLatitude(), position.getLongitude(),
@@ -101,9 +105,8 @@ public class FilterHandler extends BaseDataHandler {
         }
     }
 
-    private boolean filterLimit(Position position) {
+    private boolean filterLimit(Position position, Position last) {
         if (filterLimit != 0) {
-            Position last = getLastPosition(position.getDeviceId());
             if (last != null) {
                 return (position.getFixTime().getTime() - last.getFixTime().getTime()) > filterLimit;
             } else {
@@ -114,12 +117,12 @@ public class FilterHandler extends BaseDataHandler {
         }
     }
 
-    private boolean filter(Position p) {
+    private boolean filter(Position p, Position last) {
 
         boolean result = filterInvalid(p) || filterZero(p)
-                || filterDuplicate(p) || filterFuture(p) || filterDistance(p);
+                || filterDuplicate(p, last) || filterFuture(p) || filterDistance(p, last);
 
-        if (filterLimit(p)) {
+        if (filterLimit(p, last)) {
             result = false;
         }
 
@@ -132,10 +135,35 @@ public class FilterHandler extends BaseDataHandler {
 
     @Override
     protected Position handlePosition(Position position) {
-        if (filter(position)) {
+        if (filter(position, getLastPosition(position.getDeviceId()))) {
             return null;
         }
         return position;
     }
 
+    /**
+     * Accepted positions of the batch are compared with following ones, as if they were already processed
+     */
+    @Override
+    protected PositionBatch handleBatch(PositionBatch batch) {
+        List<Position> result = new ArrayList<>(batch.size());
+        Map<Long, Position> lastPositions = new HashMap<>();
+        for (Position position : batch) {
+            Position last = lastPositions.get(position.getDeviceId());
+            if (last == null) {
+                last = getLastPosition(position.getDeviceId());
+            }
+            if (!filter(position, last)) {
+                result.add(position);
+                if (last == null || position.getFixTime().compareTo(last.getFixTime()) > 0) {
+                    lastPositions.put(position.getDeviceId(), position);
+                }
+            }
+        }
+        if (result.isEmpty()) {
+            return null;
+        }
+        return new PositionBatch(result, batch.getResponse());
+    }
+
 }
@@ -15,6 +15,14 @@
  */
 package org.traccar;
 
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.jboss.netty.channel.ChannelFactory;
 import org.jboss.netty.channel.socket.DatagramChannelFactory;
 import org.jboss.netty.channel.socket.nio.NioDatagramChannelFactory;
@@ -22,35 +30,123 @@ import org.jboss.netty.channel.socket.nio.NioServerSocketChannelFactory;
 
 public final class GlobalChannelFactory {
 
-    private static ChannelFactory channelFactory = null;
-    private static DatagramChannelFactory datagramChannelFactory = null;
+    private static final String SHARED = "shared";
+
+    private static final int BOSS_THREADS = 1;
+
+    private static final int DEFAULT_WORKER_THREADS = Runtime.getRuntime().availableProcessors() * 2;
+
+    private static final Map<String, ChannelFactory> CHANNEL_FACTORIES = new HashMap<>();
+    private static final Map<String, DatagramChannelFactory> DATAGRAM_CHANNEL_FACTORIES = new HashMap<>();
 
     private GlobalChannelFactory() {
     }
 
-    public static void release() {
-        if (channelFactory != null) {
+    public static synchronized void release() {
+        for (ChannelFactory channelFactory : CHANNEL_FACTORIES.values()) {
             channelFactory.releaseExternalResources();
         }
-        if (datagramChannelFactory != null) {
+        for (DatagramChannelFactory datagramChannelFactory : DATAGRAM_CHANNEL_FACTORIES.values()) {
             datagramChannelFactory.releaseExternalResources();
         }
-        channelFactory = null;
-        datagramChannelFactory = null;
+        CHANNEL_FACTORIES.clear();
+        DATAGRAM_CHANNEL_FACTORIES.clear();
+    }
+
+    private static Executor createExecutor(final String name) {
+        return Executors.newCachedThreadPool(new ThreadFactory() {
+            private final AtomicInteger index = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                return new Thread(runnable, name + "-" + index.incrementAndGet());
+            }
+        });
+    }
+
+    /**
+     * Protocols with configured worker thread count get dedicated factory
+     */
+    static String getFactoryName(String protocol) {
+        if (protocol != null && Context.getConfig() != null
+                && Context.getConfig().hasKey(protocol + ".workerThreads")) {
+            return protocol;
+        }
+        return SHARED;
+    }
+
+    private static int getWorkerThreads(String name) {
+        String key;
+        if (name.equals(SHARED)) {
+            key = "server.workerThreads";
+        } else {
+            key = name + ".workerThreads";
+        }
+        if (Context.getConfig() != null) {
+            return Context.getConfig().getInteger(key, DEFAULT_WORKER_THREADS);
+        }
+        return DEFAULT_WORKER_THREADS;
     }
 
     public static ChannelFactory getFactory() {
+        return getFactory(null);
+    }
+
+    public static synchronized ChannelFactory getFactory(String protocol) {
+        String name = getFactoryName(protocol);
+        ChannelFactory channelFactory = CHANNEL_FACTORIES.get(name);
         if (channelFactory == null) {
-            channelFactory = new NioServerSocketChannelFactory();
+            channelFactory = new NioServerSocketChannelFactory(
+                    createExecutor("tcp-boss-" + name), BOSS_THREADS, createExecutor("tcp-worker-" + name),
+                    getWorkerThreads(name));
+            CHANNEL_FACTORIES.put(name, channelFactory);
         }
         return channelFactory;
     }
 
     public static DatagramChannelFactory getDatagramFactory() {
+        return getDatagramFactory(null);
+    }
+
+    public static synchronized DatagramChannelFactory getDatagramFactory(String protocol) {
+        String name = getFactoryName(protocol);
+        DatagramChannelFactory datagramChannelFactory = DATAGRAM_CHANNEL_FACTORIES.get(name);
         if (datagramChannelFactory == null) {
-            datagramChannelFactory = new NioDatagramChannelFactory();
+            datagramChannelFactory = new NioDatagramChannelFactory(
+                    createExecutor("udp-worker-" + name), getWorkerThreads(name));
+            DATAGRAM_CHANNEL_FACTORIES.put(name, datagramChannelFactory);
         }
         return datagramChannelFactory;
     }
 
+    /**
+     * Names of created factories, "shared" or protocol with dedicated worker threads
+     */
+    public static synchronized Set<String> getFactoryNames() {
+        Set<String> names = new TreeSet<>(CHANNEL_FACTORIES.keySet());
+        names.addAll(DATAGRAM_CHANNEL_FACTORIES.keySet());
+        return names;
+    }
+
+    public static synchronized int getBossThreads(String name) {
+        if (CHANNEL_FACTORIES.containsKey(name)) {
+            return BOSS_THREADS;
+        }
+        return 0;
+    }
+
+    public static synchronized int getServerWorkerThreads(String name) {
+        if (CHANNEL_FACTORIES.containsKey(name)) {
+            return getWorkerThreads(name);
+        }
+        return 0;
+    }
+
+    public static synchronized int getDatagramWorkerThreads(String name) {
+        if (DATAGRAM_CHANNEL_FACTORIES.containsKey(name)) {
+            return getWorkerThreads(name);
+        }
+        return 0;
+    }
+
 }
@@ -29,6 +29,12 @@ public final class Main {
         Context.init(args);
         Log.info("Starting server...");
 
+        if (Context.getPositionSpool() != null) {
+            Context.getPositionSpool().start();
+        }
+        if (Context.getPositionWriter() != null) {
+            Context.getPositionWriter().start();
+        }
         Context.getServerManager().start();
         if (Context.getWebServer() != null) {
             Context.getWebServer().start();
@@ -43,6 +49,13 @@ public final class Main {
                     Context.getWebServer().stop();
                 }
                 Context.getServerManager().stop();
+                if (Context.getPositionWriter() != null) {
+                    Context.getPositionWriter().stop();
+                }
+                if (Context.getPositionSpool() != null) {
+                    Context.getPositionSpool().stop();
+                }
+                Context.getConnectionManager().stop();
             }
         });
     }
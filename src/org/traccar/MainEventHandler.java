@@ -16,6 +16,7 @@
 package org.traccar;
 
 import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelHandler;
 import org.jboss.netty.channel.ChannelHandlerContext;
 import org.jboss.netty.channel.ChannelStateEvent;
 import org.jboss.netty.channel.ExceptionEvent;
@@ -25,28 +26,35 @@ import org.jboss.netty.handler.timeout.IdleStateEvent;
 import org.traccar.helper.Log;
 import org.traccar.model.Position;
 
+@ChannelHandler.Sharable
 public class MainEventHandler extends IdleStateAwareChannelHandler {
 
     @Override
     public void messageReceived(ChannelHandlerContext ctx, MessageEvent e) {
 
         if (e.getMessage() != null && e.getMessage() instanceof Position) {
+            handlePosition(e.getChannel(), (Position) e.getMessage());
+        } else if (e.getMessage() instanceof PositionBatch) {
+            for (Position position : (PositionBatch) e.getMessage()) {
+                handlePosition(e.getChannel(), position);
+            }
+        }
+    }
 
-            Position position = (Position) e.getMessage();
+    private void handlePosition(Channel channel, Position position) {
 
-            // Log position
-            StringBuilder s = new StringBuilder();
-            s.append(formatChannel(e.getChannel())).append(" ");
-            s.append("id: ").append(position.getDeviceId()).append(", ");
-            s.append("time: ").append(position.getFixTime()).append(", ");
-            s.append("lat: ").append(position.getLatitude()).append(", ");
-            s.append("lon: ").append(position.getLongitude()).append(", ");
-            s.append("speed: ").append(position.getSpeed()).append(", ");
-            s.append("course: ").append(position.getCourse());
-            Log.info(s.toString());
+        // Log position
+        StringBuilder s = new StringBuilder();
+        s.append(formatChannel(channel)).append(" ");
+        s.append("id: ").append(position.getDeviceId()).append(", ");
+        s.append("time: ").append(position.getFixTime()).append(", ");
+        s.append("lat: ").append(position.getLatitude()).append(", ");
+        s.append("lon: ").append(position.getLongitude()).append(", ");
+        s.append("speed: ").append(position.getSpeed()).append(", ");
+        s.append("course: ").append(position.getCourse());
+        Log.info(s.toString());
 
-            Context.getConnectionManager().update(position);
-        }
+        Context.getConnectionManager().update(position);
     }
 
     private static String formatChannel(Channel channel) {
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2015 Anton Tananaev (anton.tananaev@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar;
+
+import java.util.Iterator;
+import java.util.List;
+import org.traccar.model.Position;
+
+/**
+ * Positions decoded from a single message, passed through the pipeline as one event
+ */
+public class PositionBatch implements Iterable<Position> {
+
+    private final List<Position> positions;
+    private final DeferredResponse response;
+
+    public PositionBatch(List<Position> positions) {
+        this(positions, null);
+    }
+
+    public PositionBatch(List<Position> positions, DeferredResponse response) {
+        this.positions = positions;
+        this.response = response;
+    }
+
+    public List<Position> getPositions() {
+        return positions;
+    }
+
+    /**
+     * Response to send after the batch is stored, null if the device is already acknowledged
+     */
+    public DeferredResponse getResponse() {
+        return response;
+    }
+
+    public int size() {
+        return positions.size();
+    }
+
+    @Override
+    public Iterator<Position> iterator() {
+        return positions.iterator();
+    }
+
+}
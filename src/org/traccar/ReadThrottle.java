@@ -0,0 +1,70 @@
+/*
+ * Copyright 2015 Anton Tananaev (anton.tananaev@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.jboss.netty.channel.Channel;
+
+/**
+ * The only place changing readability of tracker channels. Channel is read when neither all servers are paused
+ * because persistence falls behind, nor the channel itself is suspended because its execution queue is full.
+ */
+public final class ReadThrottle {
+
+    private static volatile boolean paused;
+
+    private static final Set<Channel> SUSPENDED_CHANNELS =
+            Collections.newSetFromMap(new ConcurrentHashMap<Channel, Boolean>());
+
+    private ReadThrottle() {
+    }
+
+    public static boolean isPaused() {
+        return paused;
+    }
+
+    /**
+     * Pause or resume reading of all channels, servers apply it with {@link #update}
+     */
+    public static void setPaused(boolean value) {
+        paused = value;
+    }
+
+    public static void suspend(Channel channel) {
+        SUSPENDED_CHANNELS.add(channel);
+        update(channel);
+    }
+
+    public static void resume(Channel channel) {
+        SUSPENDED_CHANNELS.remove(channel);
+        update(channel);
+    }
+
+    /**
+     * Apply current state to the channel, state is read under channel lock so concurrent updates can't reorder
+     */
+    public static void update(Channel channel) {
+        synchronized (channel) {
+            boolean readable = !paused && !SUSPENDED_CHANNELS.contains(channel);
+            if (channel.isOpen() && channel.isReadable() != readable) {
+                channel.setReadable(readable);
+            }
+        }
+    }
+
+}
@@ -18,9 +18,11 @@ package org.traccar;
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
 import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelHandler;
 import org.traccar.model.Event;
 import org.traccar.model.Position;
 
+@ChannelHandler.Sharable
 public class RemoteAddressHandler extends ExtendedObjectDecoder {
 
     @Override
@@ -33,6 +35,10 @@ public class RemoteAddressHandler extends ExtendedObjectDecoder {
         if (msg instanceof Position) {
             Position position = (Position) msg;
             position.set(Event.KEY_IP, hostAddress);
+        } else if (msg instanceof PositionBatch) {
+            for (Position position : (PositionBatch) msg) {
+                position.set(Event.KEY_IP, hostAddress);
+            }
         }
 
         return msg;
@@ -15,7 +15,11 @@
  */
 package org.traccar;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.jboss.netty.channel.ChannelEvent;
+import org.jboss.netty.channel.ChannelHandler;
 import org.jboss.netty.channel.ChannelHandlerContext;
 import org.jboss.netty.channel.ChannelUpstreamHandler;
 import org.jboss.netty.channel.Channels;
@@ -24,6 +28,7 @@ import org.traccar.geocode.AddressFormat;
 import org.traccar.geocode.ReverseGeocoder;
 import org.traccar.model.Position;
 
+@ChannelHandler.Sharable
 public class ReverseGeocoderHandler implements ChannelUpstreamHandler {
 
     private final ReverseGeocoder geocoder;
@@ -57,9 +62,43 @@ public class ReverseGeocoderHandler implements ChannelUpstreamHandler {
                     }
                 });
             }
+        } else if (message instanceof PositionBatch) {
+            handleBatch(ctx, e, (PositionBatch) message);
         } else {
             Channels.fireMessageReceived(ctx, message, e.getRemoteAddress());
         }
     }
 
+    /**
+     * Batch is passed on after all its addresses are resolved
+     */
+    private void handleBatch(final ChannelHandlerContext ctx, final MessageEvent e, final PositionBatch batch) {
+        final List<Position> positions = new ArrayList<>(batch.size());
+        for (Position position : batch) {
+            if (geocoder != null && (processInvalidPositions || position.getValid())) {
+                positions.add(position);
+            }
+        }
+        if (positions.isEmpty()) {
+            if (batch.getResponse() != null) {
+                batch.getResponse().send();
+            }
+            return;
+        }
+        final AtomicInteger remaining = new AtomicInteger(positions.size());
+        for (final Position position : positions) {
+            geocoder.getAddress(addressFormat, position.getLatitude(), position.getLongitude(),
+                    new ReverseGeocoder.ReverseGeocoderCallback() {
+                @Override
+                public void onResult(String address) {
+                    position.setAddress(address);
+                    if (remaining.decrementAndGet() == 0) {
+                        Channels.fireMessageReceived(
+                                ctx, new PositionBatch(positions, batch.getResponse()), e.getRemoteAddress());
+                    }
+                }
+            });
+        }
+    }
+
 }
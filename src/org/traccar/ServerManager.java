@@ -22,6 +22,8 @@ import java.net.URLDecoder;
 import java.util.Enumeration;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 import org.jboss.netty.bootstrap.ConnectionlessBootstrap;
@@ -87,6 +89,32 @@ public class ServerManager {
         GlobalTimer.release();
     }
 
+    /**
+     * Pause or resume reading from all tracker channels to push load back to devices
+     */
+    public void setReadable(boolean readable) {
+        ReadThrottle.setPaused(!readable);
+        for (TrackerServer server : serverList) {
+            server.updateReadable();
+        }
+    }
+
+    /**
+     * Number of open channels of all servers by channel factory name
+     */
+    public Map<String, Integer> getOpenChannels() {
+        Map<String, Integer> result = new TreeMap<>();
+        for (TrackerServer server : serverList) {
+            String name = GlobalChannelFactory.getFactoryName(server.getProtocol());
+            Integer count = result.get(name);
+            if (count == null) {
+                count = 0;
+            }
+            result.put(name, count + server.getChannelGroup().size());
+        }
+        return result;
+    }
+
     private boolean isProtocolEnabled(String protocol) {
         return Context.getConfig().hasKey(protocol + ".port");
     }
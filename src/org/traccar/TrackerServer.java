@@ -20,10 +20,13 @@ import java.nio.ByteOrder;
 import org.jboss.netty.bootstrap.Bootstrap;
 import org.jboss.netty.bootstrap.ConnectionlessBootstrap;
 import org.jboss.netty.bootstrap.ServerBootstrap;
+import org.jboss.netty.buffer.ChannelBufferFactory;
+import org.jboss.netty.buffer.DirectChannelBufferFactory;
 import org.jboss.netty.buffer.HeapChannelBufferFactory;
 import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.ChannelPipeline;
 import org.jboss.netty.channel.ChannelPipelineFactory;
+import org.jboss.netty.channel.ServerChannel;
 import org.jboss.netty.channel.group.ChannelGroup;
 import org.jboss.netty.channel.group.ChannelGroupFuture;
 import org.jboss.netty.channel.group.DefaultChannelGroup;
@@ -35,6 +38,7 @@ public abstract class TrackerServer {
 
     private final Bootstrap bootstrap;
     private final String protocol;
+    private final boolean directBuffers;
 
     public String getProtocol() {
         return protocol;
@@ -46,14 +50,23 @@ public abstract class TrackerServer {
 
         // Set appropriate channel factory
         if (bootstrap instanceof ServerBootstrap) {
-            bootstrap.setFactory(GlobalChannelFactory.getFactory());
+            bootstrap.setFactory(GlobalChannelFactory.getFactory(protocol));
         } else if (bootstrap instanceof ConnectionlessBootstrap) {
-            bootstrap.setFactory(GlobalChannelFactory.getDatagramFactory());
+            bootstrap.setFactory(GlobalChannelFactory.getDatagramFactory(protocol));
         }
 
         address = Context.getConfig().getString(protocol + ".address");
         port = Context.getConfig().getInteger(protocol + ".port");
 
+        if (Context.getConfig().hasKey(protocol + ".directBuffers")) {
+            directBuffers = Context.getConfig().getBoolean(protocol + ".directBuffers");
+        } else {
+            directBuffers = Context.getConfig().getBoolean("server.directBuffers");
+        }
+        if (directBuffers) {
+            setEndianness(ByteOrder.BIG_ENDIAN);
+        }
+
         bootstrap.setPipelineFactory(new BasePipelineFactory(this, protocol) {
             @Override
             protected void addSpecificHandlers(ChannelPipeline pipeline) {
@@ -64,6 +77,10 @@ public abstract class TrackerServer {
 
     protected abstract void addSpecificHandlers(ChannelPipeline pipeline);
 
+    public boolean isConnectionless() {
+        return bootstrap instanceof ConnectionlessBootstrap;
+    }
+
     /**
      * Server port
      */
@@ -94,8 +111,15 @@ public abstract class TrackerServer {
      * Set endianness
      */
     public void setEndianness(ByteOrder byteOrder) {
-        bootstrap.setOption("bufferFactory", new HeapChannelBufferFactory(byteOrder));
-        bootstrap.setOption("child.bufferFactory", new HeapChannelBufferFactory(byteOrder));
+        ChannelBufferFactory bufferFactory;
+        if (directBuffers) {
+            // Small buffers are sliced from shared preallocated direct memory
+            bufferFactory = DirectChannelBufferFactory.getInstance(byteOrder);
+        } else {
+            bufferFactory = HeapChannelBufferFactory.getInstance(byteOrder);
+        }
+        bootstrap.setOption("bufferFactory", bufferFactory);
+        bootstrap.setOption("child.bufferFactory", bufferFactory);
     }
 
     /**
@@ -107,6 +131,17 @@ public abstract class TrackerServer {
         return allChannels;
     }
 
+    /**
+     * Apply read throttling state to all opened channels
+     */
+    public void updateReadable() {
+        for (Channel channel : allChannels) {
+            if (!(channel instanceof ServerChannel)) {
+                ReadThrottle.update(channel);
+            }
+        }
+    }
+
     public void setPipelineFactory(ChannelPipelineFactory pipelineFactory) {
         bootstrap.setPipelineFactory(pipelineFactory);
     }
@@ -144,6 +179,9 @@ public abstract class TrackerServer {
     public void stop() {
         ChannelGroupFuture future = getChannelGroup().close();
         future.awaitUninterruptibly();
+        if (getPipelineFactory() instanceof BasePipelineFactory) {
+            ((BasePipelineFactory) getPipelineFactory()).release();
+        }
     }
 
 }
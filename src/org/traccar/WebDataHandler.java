@@ -20,11 +20,13 @@ import java.util.Formatter;
 import java.util.Locale;
 import java.util.TimeZone;
 
+import org.jboss.netty.channel.ChannelHandler;
 import org.traccar.helper.Checksum;
 import org.traccar.model.Device;
 import org.traccar.model.Event;
 import org.traccar.model.Position;
 
+@ChannelHandler.Sharable
 public class WebDataHandler extends BaseDataHandler {
 
     private final String url;
@@ -42,6 +42,14 @@ public class ActiveDevice {
         return deviceId;
     }
 
+    public Protocol getProtocol() {
+        return protocol;
+    }
+
+    public SocketAddress getRemoteAddress() {
+        return remoteAddress;
+    }
+
     public void sendCommand(Command command) {
         protocol.sendCommand(this, command);
     }
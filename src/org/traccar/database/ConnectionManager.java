@@ -18,24 +18,44 @@ package org.traccar.database;
 import java.net.SocketAddress;
 import java.sql.SQLException;
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 import org.jboss.netty.channel.Channel;
+import org.traccar.Context;
 import org.traccar.Protocol;
 import org.traccar.helper.Log;
+import org.traccar.helper.LongHashSet;
+import org.traccar.helper.StripedLongHashMap;
 import org.traccar.model.Position;
 
 public class ConnectionManager {
 
-    private final Map<Long, ActiveDevice> activeDevices = new HashMap<>();
-    private final Map<Long, Position> positions = new HashMap<>();
-    private final Map<Long, Set<DataCacheListener>> listeners = new HashMap<>();
+    private static final long DEFAULT_LATEST_DELAY = 10;
+
+    private final StripedLongHashMap<ActiveDevice> activeDevices = new StripedLongHashMap<>();
+    private final ConcurrentMap<Channel, LongHashSet> channelDevices = new ConcurrentHashMap<>();
+    private final StripedLongHashMap<Position> positions = new StripedLongHashMap<>();
+    private final ConcurrentMap<Long, Set<DataCacheListener>> listeners = new ConcurrentHashMap<>();
+
+    private final DataManager dataManager;
+    private boolean latestWriteBehind;
+    private final Set<Long> changedDevices = newConcurrentSet();
+    private ScheduledExecutorService latestExecutor;
+
+    private static <T> Set<T> newConcurrentSet() {
+        return Collections.newSetFromMap(new ConcurrentHashMap<T, Boolean>());
+    }
 
     public ConnectionManager(DataManager dataManager) {
+        this.dataManager = dataManager;
         if (dataManager != null) {
             try {
                 for (Position position : dataManager.getLatestPositions()) {
@@ -44,18 +64,134 @@ public class ConnectionManager {
             } catch (SQLException error) {
                 Log.warning(error);
             }
+
+            latestWriteBehind = Context.getConfig().getBoolean("database.latestWriteBehind");
+            if (latestWriteBehind) {
+                long delay = Context.getConfig().getLong("database.latestDelay", DEFAULT_LATEST_DELAY);
+                latestExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        Thread thread = new Thread(runnable, "latest-writer");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+                latestExecutor.scheduleWithFixedDelay(new Runnable() {
+                    @Override
+                    public void run() {
+                        flushLatestPositions();
+                    }
+                }, delay, delay, TimeUnit.SECONDS);
+            }
+        }
+    }
+
+    /**
+     * If enabled, latest position of a device is only kept in memory and stored periodically
+     */
+    public boolean isLatestWriteBehind() {
+        return latestWriteBehind;
+    }
+
+    public void flushLatestPositions() {
+        List<Position> changedPositions = new LinkedList<>();
+        for (long deviceId : changedDevices) {
+            // Remove mark first, so that concurrent update marks device again
+            changedDevices.remove(deviceId);
+            Position position = positions.get(deviceId);
+            if (position != null) {
+                if (position.getId() != 0) {
+                    changedPositions.add(position);
+                } else {
+                    changedDevices.add(deviceId);
+                }
+            }
+        }
+
+        if (!changedPositions.isEmpty()) {
+            try {
+                dataManager.updateLatestPositions(changedPositions);
+            } catch (SQLException error) {
+                Log.warning(error);
+                for (Position position : changedPositions) {
+                    changedDevices.add(position.getDeviceId());
+                }
+            }
+        }
+    }
+
+    public void stop() {
+        if (latestExecutor != null) {
+            latestExecutor.shutdown();
+            try {
+                latestExecutor.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException error) {
+                Log.warning(error);
+            }
+            latestExecutor = null;
+            flushLatestPositions();
         }
     }
 
+    /**
+     * Register device connection, existing entry is kept if device is still on the same channel
+     */
     public void setActiveDevice(long deviceId, Protocol protocol, Channel channel, SocketAddress remoteAddress) {
-        activeDevices.put(deviceId, new ActiveDevice(deviceId, protocol, channel, remoteAddress));
+        ActiveDevice oldDevice = activeDevices.get(deviceId);
+        if (oldDevice != null && oldDevice.getChannel() == channel && oldDevice.getProtocol() == protocol
+                && (remoteAddress == null || remoteAddress.equals(oldDevice.getRemoteAddress()))) {
+            return;
+        }
+
+        ActiveDevice newDevice = new ActiveDevice(deviceId, protocol, channel, remoteAddress);
+        oldDevice = activeDevices.put(deviceId, newDevice);
+
+        if (oldDevice != null && oldDevice.getChannel() != channel && oldDevice.getChannel() != null) {
+            LongHashSet oldDevices = channelDevices.get(oldDevice.getChannel());
+            if (oldDevices != null) {
+                synchronized (oldDevices) {
+                    oldDevices.remove(deviceId);
+                }
+            }
+        }
+
+        if (channel != null) {
+            LongHashSet devices = channelDevices.get(channel);
+            if (devices == null) {
+                devices = new LongHashSet(1);
+                LongHashSet existingDevices = channelDevices.putIfAbsent(channel, devices);
+                if (existingDevices != null) {
+                    devices = existingDevices;
+                }
+            }
+            synchronized (devices) {
+                devices.add(deviceId);
+            }
+            // Concurrent removal may have taken device list of the channel before the device was added
+            if (channelDevices.get(channel) != devices) {
+                activeDevices.remove(deviceId, newDevice);
+            }
+            if (!channel.isOpen()) {
+                removeActiveDevice(channel);
+            }
+        }
     }
 
+    /**
+     * Remove devices of the channel, only entries still pointing to the channel are removed
+     */
     public void removeActiveDevice(Channel channel) {
-        for (ActiveDevice activeDevice : activeDevices.values()) {
-            if (activeDevice.getChannel() == channel) {
-                activeDevices.remove(activeDevice.getDeviceId());
-                break;
+        LongHashSet devices = channelDevices.remove(channel);
+        if (devices != null) {
+            long[] deviceIds;
+            synchronized (devices) {
+                deviceIds = devices.toArray();
+            }
+            for (long deviceId : deviceIds) {
+                ActiveDevice activeDevice = activeDevices.get(deviceId);
+                if (activeDevice != null && activeDevice.getChannel() == channel) {
+                    activeDevices.remove(deviceId, activeDevice);
+                }
             }
         }
     }
@@ -64,13 +200,33 @@ public class ConnectionManager {
         return activeDevices.get(deviceId);
     }
 
-    public synchronized void update(Position position) {
+    public int getActiveDeviceCount() {
+        return activeDevices.size();
+    }
+
+    public void update(Position position) {
         long deviceId = position.getDeviceId();
-        Position lastPosition = positions.get(deviceId);
-        if (lastPosition == null || position.getFixTime().compareTo(lastPosition.getFixTime()) > 0)
-            positions.put(deviceId, position);
-        if (listeners.containsKey(deviceId)) {
-            for (DataCacheListener listener : listeners.get(deviceId)) {
+        while (true) {
+            Position lastPosition = positions.get(deviceId);
+            if (lastPosition == null) {
+                if (positions.putIfAbsent(deviceId, position) != null) {
+                    continue;
+                }
+            } else if (position.getFixTime().compareTo(lastPosition.getFixTime()) > 0) {
+                if (!positions.replace(deviceId, lastPosition, position)) {
+                    continue;
+                }
+            } else {
+                break;
+            }
+            if (latestWriteBehind) {
+                changedDevices.add(deviceId);
+            }
+            break;
+        }
+        Set<DataCacheListener> deviceListeners = listeners.get(deviceId);
+        if (deviceListeners != null) {
+            for (DataCacheListener listener : deviceListeners) {
                 listener.onUpdate(position);
             }
         }
@@ -80,13 +236,14 @@ public class ConnectionManager {
         return positions.get(deviceId);
     }
 
-    public synchronized Collection<Position> getInitialState(Collection<Long> devices) {
+    public Collection<Position> getInitialState(Collection<Long> devices) {
 
         List<Position> result = new LinkedList<>();
 
         for (long device : devices) {
-            if (positions.containsKey(device)) {
-                result.add(positions.get(device));
+            Position position = positions.get(device);
+            if (position != null) {
+                result.add(position);
             }
         }
 
@@ -103,11 +260,16 @@ public class ConnectionManager {
         }
     }
 
-    public synchronized void addListener(long deviceId, DataCacheListener listener) {
-        if (!listeners.containsKey(deviceId)) {
-            listeners.put(deviceId, new HashSet<DataCacheListener>());
+    public void addListener(long deviceId, DataCacheListener listener) {
+        Set<DataCacheListener> deviceListeners = listeners.get(deviceId);
+        if (deviceListeners == null) {
+            deviceListeners = newConcurrentSet();
+            Set<DataCacheListener> existingListeners = listeners.putIfAbsent(deviceId, deviceListeners);
+            if (existingListeners != null) {
+                deviceListeners = existingListeners;
+            }
         }
-        listeners.get(deviceId).add(listener);
+        deviceListeners.add(listener);
     }
 
     public void removeListener(Collection<Long> devices, DataCacheListener listener) {
@@ -116,11 +278,11 @@ public class ConnectionManager {
         }
     }
 
-    public synchronized void removeListener(long deviceId, DataCacheListener listener) {
-        if (!listeners.containsKey(deviceId)) {
-            listeners.put(deviceId, new HashSet<DataCacheListener>());
+    public void removeListener(long deviceId, DataCacheListener listener) {
+        Set<DataCacheListener> deviceListeners = listeners.get(deviceId);
+        if (deviceListeners != null) {
+            deviceListeners.remove(listener);
         }
-        listeners.get(deviceId).remove(listener);
     }
 
 }
@@ -17,6 +17,7 @@ package org.traccar.database;
 
 import com.mchange.v2.c3p0.ComboPooledDataSource;
 import java.io.File;
+import java.io.IOException;
 import java.net.URL;
 import java.net.URLClassLoader;
 import java.sql.Connection;
@@ -25,14 +26,24 @@ import java.sql.DriverManager;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 import javax.naming.InitialContext;
 import javax.sql.DataSource;
 import org.traccar.Config;
 import org.traccar.helper.DriverDelegate;
 import org.traccar.helper.Log;
+import org.traccar.helper.StripedLongHashMap;
 import org.traccar.model.Device;
 import org.traccar.model.MiscFormatter;
 import org.traccar.model.Permission;
@@ -46,15 +57,58 @@ import org.traccar.web.JsonConverter;
 public class DataManager implements IdentityManager {
 
     private static final long DEFAULT_REFRESH_DELAY = 300;
+    private static final int DEFAULT_MAX_STATEMENTS = 50;
+    private static final int DEFAULT_FETCH_SIZE = 1000;
+    private static final long DEFAULT_UNKNOWN_DELAY = 60;
+    private static final int UNKNOWN_DEVICES_LIMIT = 10000;
+
+    /**
+     * Device lookup tables, single devices are changed in place and full reload replaces the whole cache
+     */
+    private static final class DeviceCache {
+
+        private final StripedLongHashMap<Device> devicesById;
+        private final ConcurrentMap<String, Device> devicesByUniqueId;
+
+        private DeviceCache(Collection<Device> devices) {
+            devicesById = new StripedLongHashMap<>(devices.size());
+            devicesByUniqueId = new ConcurrentHashMap<>(devices.size() * 2);
+            for (Device device : devices) {
+                put(device);
+            }
+        }
+
+        private void put(Device device) {
+            Device oldDevice = devicesById.put(device.getId(), device);
+            if (oldDevice != null && !oldDevice.getUniqueId().equals(device.getUniqueId())) {
+                devicesByUniqueId.remove(oldDevice.getUniqueId(), oldDevice);
+            }
+            devicesByUniqueId.put(device.getUniqueId(), device);
+        }
+
+        private void remove(long id) {
+            Device device = devicesById.remove(id);
+            if (device != null) {
+                devicesByUniqueId.remove(device.getUniqueId(), device);
+            }
+        }
+
+    }
 
     private final Config config;
 
     private DataSource dataSource;
 
-    private final Map<Long, Device> devicesById = new HashMap<>();
-    private final Map<String, Device> devicesByUniqueId = new HashMap<>();
-    private long devicesLastUpdate;
+    private volatile DeviceCache deviceCache = new DeviceCache(Collections.<Device>emptyList());
+    private final Lock deviceCacheLock = new ReentrantLock();
+    private volatile long devicesLastUpdate;
     private final long devicesRefreshDelay;
+    private ScheduledExecutorService devicesRefreshExecutor;
+
+    private final ConcurrentMap<String, Long> unknownDevices = new ConcurrentHashMap<>();
+    private final long unknownDevicesDelay;
+
+    private final int fetchSize;
 
     public DataManager(Config config) throws Exception {
         this.config = config;
@@ -63,12 +117,40 @@ public class DataManager implements IdentityManager {
         initDatabaseSchema();
 
         devicesRefreshDelay = config.getLong("database.refreshDelay", DEFAULT_REFRESH_DELAY) * 1000;
+        unknownDevicesDelay = config.getLong("database.unknownDelay", DEFAULT_UNKNOWN_DELAY) * 1000;
+        fetchSize = config.getInteger("database.fetchSize", getDefaultFetchSize());
+    }
+
+    /**
+     * MySQL driver ignores fetch size and reads the whole result into memory unless cursor fetch is enabled in the
+     * connection URL, so rows are streamed one by one instead
+     */
+    private int getDefaultFetchSize() {
+        String url = config.getString("database.url");
+        if (url != null && url.startsWith("jdbc:mysql:") && !url.contains("useCursorFetch=true")) {
+            return Integer.MIN_VALUE;
+        }
+        return DEFAULT_FETCH_SIZE;
     }
 
     public DataSource getDataSource() {
         return dataSource;
     }
 
+    /**
+     * Number of prepared statements kept by the connection pool
+     */
+    public int getCachedStatements() {
+        if (dataSource instanceof ComboPooledDataSource) {
+            try {
+                return ((ComboPooledDataSource) dataSource).getStatementCacheNumStatementsAllUsers();
+            } catch (SQLException error) {
+                Log.warning(error);
+            }
+        }
+        return 0;
+    }
+
     private void initDatabase() throws Exception {
 
         String jndiName = config.getString("database.jndi");
@@ -106,31 +188,135 @@ public class DataManager implements IdentityManager {
             if (maxPoolSize != 0) {
                 ds.setMaxPoolSize(maxPoolSize);
             }
+            int maxStatements = config.getInteger("database.maxStatements", DEFAULT_MAX_STATEMENTS);
+            if (maxStatements != 0) {
+                // Keep prepared statements per connection, closing them in a separate thread avoids driver deadlocks
+                ds.setMaxStatementsPerConnection(maxStatements);
+                ds.setStatementCacheNumDeferredCloseThreads(1);
+            }
             dataSource = ds;
         }
     }
 
     @Override
     public Device getDeviceById(long id) {
-        return devicesById.get(id);
+        return deviceCache.devicesById.get(id);
     }
 
     @Override
     public Device getDeviceByUniqueId(String uniqueId) throws SQLException {
 
-        if (System.currentTimeMillis() - devicesLastUpdate > devicesRefreshDelay
-                || !devicesByUniqueId.containsKey(uniqueId)) {
+        if (devicesLastUpdate == 0) {
+            initDevices();
+        }
+
+        Device device = deviceCache.devicesByUniqueId.get(uniqueId);
+        if (device == null) {
+            device = loadDevice(uniqueId);
+        }
+        return device;
+    }
 
-            devicesById.clear();
-            devicesByUniqueId.clear();
-            for (Device device : getAllDevices()) {
-                devicesById.put(device.getId(), device);
-                devicesByUniqueId.put(device.getUniqueId(), device);
+    /**
+     * Load all devices on first lookup, later reloads are done in background
+     */
+    private void initDevices() throws SQLException {
+        deviceCacheLock.lock();
+        try {
+            if (devicesLastUpdate == 0) {
+                refreshDevices();
+                if (devicesRefreshExecutor == null && devicesRefreshDelay > 0) {
+                    devicesRefreshExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                        @Override
+                        public Thread newThread(Runnable runnable) {
+                            Thread thread = new Thread(runnable, "device-refresh");
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+                    devicesRefreshExecutor.scheduleWithFixedDelay(new Runnable() {
+                        @Override
+                        public void run() {
+                            try {
+                                refreshDevices();
+                            } catch (SQLException error) {
+                                Log.warning(error);
+                            }
+                        }
+                    }, devicesRefreshDelay, devicesRefreshDelay, TimeUnit.MILLISECONDS);
+                }
             }
+        } finally {
+            deviceCacheLock.unlock();
+        }
+    }
+
+    /**
+     * Reload all devices into a new cache, lookups keep using current cache until it is replaced
+     */
+    private void refreshDevices() throws SQLException {
+        deviceCacheLock.lock();
+        try {
+            deviceCache = new DeviceCache(getAllDevices());
+            unknownDevices.clear();
             devicesLastUpdate = System.currentTimeMillis();
+        } finally {
+            deviceCacheLock.unlock();
+        }
+    }
+
+    /**
+     * Look up device missing from cache, unknown identifiers are remembered for a while
+     */
+    private Device loadDevice(String uniqueId) throws SQLException {
+
+        Long expiration = unknownDevices.get(uniqueId);
+        if (expiration != null && expiration > System.currentTimeMillis()) {
+            return null;
+        }
+
+        Device device = null;
+        if (config.hasKey("database.selectDeviceByUniqueId")) {
+            Collection<Device> devices = QueryBuilder.create(dataSource, getQuery("database.selectDeviceByUniqueId"))
+                    .setString("uniqueId", uniqueId)
+                    .executeQuery(new Device());
+            if (!devices.isEmpty()) {
+                device = devices.iterator().next();
+                updateDeviceCache(device, null);
+            }
+        } else {
+            refreshDevices();
+            device = deviceCache.devicesByUniqueId.get(uniqueId);
+        }
+
+        if (device == null) {
+            if (unknownDevices.size() >= UNKNOWN_DEVICES_LIMIT) {
+                unknownDevices.clear();
+            }
+            unknownDevices.put(uniqueId, System.currentTimeMillis() + unknownDevicesDelay);
+        } else {
+            unknownDevices.remove(uniqueId);
         }
+        return device;
+    }
 
-        return devicesByUniqueId.get(uniqueId);
+    /**
+     * Apply single device change to current cache, either device or removedId can be provided
+     */
+    private void updateDeviceCache(Device device, Long removedId) {
+        // Lock keeps change from being applied to a cache that is being replaced by reload
+        deviceCacheLock.lock();
+        try {
+            if (device != null) {
+                deviceCache.put(device);
+                unknownDevices.remove(device.getUniqueId());
+            }
+            if (removedId != null) {
+                deviceCache.remove(removedId);
+            }
+        } finally {
+            deviceCacheLock.unlock();
+        }
     }
 
     private String getQuery(String key) {
@@ -298,18 +484,21 @@ public class DataManager implements IdentityManager {
         device.setId(QueryBuilder.create(dataSource, getQuery("database.insertDevice"), true)
                 .setObject(device)
                 .executeUpdate());
+        updateDeviceCache(device, null);
     }
 
     public void updateDevice(Device device) throws SQLException {
         QueryBuilder.create(dataSource, getQuery("database.updateDevice"))
                 .setObject(device)
                 .executeUpdate();
+        updateDeviceCache(device, null);
     }
 
     public void removeDevice(Device device) throws SQLException {
         QueryBuilder.create(dataSource, getQuery("database.deleteDevice"))
                 .setObject(device)
                 .executeUpdate();
+        updateDeviceCache(null, device.getId());
         AsyncServlet.sessionRefreshDevice(device.getId());
     }
 
@@ -337,6 +526,37 @@ public class DataManager implements IdentityManager {
                 .executeQuery(new Position());
     }
 
+    /**
+     * Stream positions ordered by fix time and id, starting after the given cursor position
+     *
+     * @param afterTime fix time of the last received position, null for the first page
+     * @param limit maximum number of positions, 0 for no limit
+     * @return number of positions passed to the handler
+     * @throws SQLException also if paging is requested and the page query is not configured
+     */
+    public int getPositions(
+            long userId, long deviceId, Date from, Date to, Date afterTime, long afterId, int limit,
+            ResultHandler<Position> handler) throws SQLException, IOException {
+        String query = config.getString("database.selectPositionsPage");
+        if (query == null) {
+            if (afterTime != null || limit > 0) {
+                // Unordered query can't be continued, so a page would silently miss following positions
+                throw new SQLException("Query not provided: database.selectPositionsPage");
+            }
+            query = getQuery("database.selectPositions");
+        }
+        if (afterTime == null) {
+            afterTime = from;
+        }
+        return QueryBuilder.create(dataSource, query)
+                .setLong("deviceId", deviceId)
+                .setDate("from", from)
+                .setDate("to", to)
+                .setDate("afterTime", afterTime)
+                .setLong("afterId", afterId)
+                .executeQuery(new Position(), fetchSize, limit, handler);
+    }
+
     public void addPosition(Position position) throws SQLException {
         position.setId(QueryBuilder.create(dataSource, getQuery("database.insertPosition"), true)
                 .setObject(position)
@@ -348,6 +568,26 @@ public class DataManager implements IdentityManager {
                 .executeUpdate());
     }
 
+    public void addPositions(Collection<Position> positions) throws SQLException {
+        QueryBuilder builder = QueryBuilder.create(dataSource, getQuery("database.insertPosition"), true);
+        for (Position position : positions) {
+            builder.setObject(position)
+                    .setDate("time", position.getFixTime()) // tmp
+                    .setLong("device_id", position.getDeviceId()) // tmp
+                    .setLong("power", 0) // tmp
+                    .setString("extended_info", MiscFormatter.toXmlString(position.getAttributes())) // tmp
+                    .setString("other", MiscFormatter.toXmlString(position.getAttributes())) // tmp
+                    .addBatch();
+        }
+        List<Long> keys = builder.executeBatch();
+        if (keys.size() == positions.size()) {
+            Iterator<Long> iterator = keys.iterator();
+            for (Position position : positions) {
+                position.setId(iterator.next());
+            }
+        }
+    }
+
     public void updateLatestPosition(Position position) throws SQLException {
         QueryBuilder.create(dataSource, getQuery("database.updateLatestPosition"))
                 .setObject(position)
@@ -359,6 +599,20 @@ public class DataManager implements IdentityManager {
                 .executeUpdate();
     }
 
+    public void updateLatestPositions(Collection<Position> positions) throws SQLException {
+        QueryBuilder builder = QueryBuilder.create(dataSource, getQuery("database.updateLatestPosition"));
+        for (Position position : positions) {
+            builder.setObject(position)
+                    .setDate("time", position.getFixTime()) // tmp
+                    .setLong("device_id", position.getDeviceId()) // tmp
+                    .setLong("power", 0) // tmp
+                    .setString("extended_info", MiscFormatter.toXmlString(position.getAttributes())) // tmp
+                    .setString("other", MiscFormatter.toXmlString(position.getAttributes())) // tmp
+                    .addBatch();
+        }
+        builder.executeBatch();
+    }
+
     public Collection<Position> getLatestPositions() throws SQLException {
         return QueryBuilder.create(dataSource, getQuery("database.selectLatestPositions"))
                 .executeQuery(new Position());
@@ -15,13 +15,16 @@
  */
 package org.traccar.database;
 
+import java.lang.reflect.InvocationTargetException;
 import java.sql.SQLException;
+import java.util.AbstractList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Map;
-import java.util.Set;
+import java.util.Objects;
 import org.traccar.helper.Log;
+import org.traccar.helper.LongHashMap;
+import org.traccar.helper.LongHashSet;
+import org.traccar.helper.ModelIntrospector;
 import org.traccar.model.Permission;
 import org.traccar.model.User;
 
@@ -29,15 +32,80 @@ public class PermissionsManager {
 
     private final DataManager dataManager;
 
-    private final Map<Long, User> users = new HashMap<>();
+    /**
+     * Published maps are never modified, writers replace them with updated copies
+     */
+    private volatile LongHashMap<User> users = new LongHashMap<>();
 
-    private final Map<Long, Set<Long>> permissions = new HashMap<>();
+    /**
+     * Read-only view of sorted device identifiers, shared between callers
+     */
+    private static final class DeviceList extends AbstractList<Long> {
 
-    private Set<Long> getNotNull(long userId) {
-        if (!permissions.containsKey(userId)) {
-            permissions.put(userId, new HashSet<Long>());
+        private final long[] devices;
+
+        private DeviceList(long[] devices) {
+            this.devices = devices;
+        }
+
+        @Override
+        public Long get(int index) {
+            return devices[index];
+        }
+
+        @Override
+        public int size() {
+            return devices.length;
+        }
+
+        @Override
+        public int indexOf(Object o) {
+            if (o instanceof Long) {
+                int index = Arrays.binarySearch(devices, (Long) o);
+                if (index >= 0) {
+                    return index;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        public int lastIndexOf(Object o) {
+            return indexOf(o);
         }
-        return permissions.get(userId);
+
+        @Override
+        public boolean contains(Object o) {
+            return indexOf(o) >= 0;
+        }
+
+    }
+
+    private static final DeviceList EMPTY = new DeviceList(new long[0]);
+
+    /**
+     * Sorted device identifiers per user
+     */
+    private volatile LongHashMap<DeviceList> permissions = new LongHashMap<>();
+
+    private long[] getNotNull(long userId) {
+        return getListNotNull(userId).devices;
+    }
+
+    private DeviceList getListNotNull(long userId) {
+        DeviceList devices = permissions.get(userId);
+        if (devices != null) {
+            return devices;
+        }
+        return EMPTY;
+    }
+
+    private static <V> LongHashMap<V> copy(LongHashMap<V> map) {
+        LongHashMap<V> result = new LongHashMap<>(map.size() + 1);
+        for (long key : map.keys()) {
+            result.put(key, map.get(key));
+        }
+        return result;
     }
 
     public PermissionsManager(DataManager dataManager) {
@@ -45,23 +113,137 @@ public class PermissionsManager {
         refresh();
     }
 
-    public final void refresh() {
-        users.clear();
-        permissions.clear();
+    public final synchronized void refresh() {
         try {
+            LongHashMap<User> newUsers = new LongHashMap<>();
             for (User user : dataManager.getUsers()) {
-                users.put(user.getId(), user);
+                newUsers.put(user.getId(), user);
             }
+
+            LongHashMap<LongHashSet> userDevices = new LongHashMap<>();
             for (Permission permission : dataManager.getPermissions()) {
-                getNotNull(permission.getUserId()).add(permission.getDeviceId());
+                LongHashSet devices = userDevices.get(permission.getUserId());
+                if (devices == null) {
+                    devices = new LongHashSet();
+                    userDevices.put(permission.getUserId(), devices);
+                }
+                devices.add(permission.getDeviceId());
             }
+            LongHashMap<DeviceList> newPermissions = new LongHashMap<>(userDevices.size());
+            for (long userId : userDevices.keys()) {
+                long[] devices = userDevices.get(userId).toArray();
+                Arrays.sort(devices);
+                newPermissions.put(userId, new DeviceList(devices));
+            }
+
+            users = newUsers;
+            permissions = newPermissions;
         } catch (SQLException error) {
             Log.warning(error);
         }
     }
 
+    private static boolean isSameUser(User user, User otherUser) {
+        if (user == otherUser) {
+            return true;
+        }
+        for (ModelIntrospector.Property property : ModelIntrospector.getGetters(User.class)) {
+            try {
+                if (!Objects.equals(property.getMethod().invoke(user), property.getMethod().invoke(otherUser))) {
+                    return false;
+                }
+            } catch (IllegalAccessException | InvocationTargetException error) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Maps are copied on change, so unchanged users are not stored again
+     */
+    public synchronized void updateUser(User user) {
+        User oldUser = users.get(user.getId());
+        if (oldUser != null && isSameUser(oldUser, user)) {
+            return;
+        }
+        LongHashMap<User> newUsers = copy(users);
+        newUsers.put(user.getId(), user);
+        users = newUsers;
+    }
+
+    public synchronized void removeUser(long userId) {
+        if (users.get(userId) == null && permissions.get(userId) == null) {
+            return;
+        }
+        LongHashMap<User> newUsers = copy(users);
+        newUsers.remove(userId);
+        LongHashMap<DeviceList> newPermissions = copy(permissions);
+        newPermissions.remove(userId);
+        users = newUsers;
+        permissions = newPermissions;
+    }
+
+    public synchronized void addPermission(long userId, long deviceId) {
+        long[] devices = getNotNull(userId);
+        int index = Arrays.binarySearch(devices, deviceId);
+        if (index < 0) {
+            index = -index - 1;
+            long[] newDevices = new long[devices.length + 1];
+            System.arraycopy(devices, 0, newDevices, 0, index);
+            newDevices[index] = deviceId;
+            System.arraycopy(devices, index, newDevices, index + 1, devices.length - index);
+            LongHashMap<DeviceList> newPermissions = copy(permissions);
+            newPermissions.put(userId, new DeviceList(newDevices));
+            permissions = newPermissions;
+        }
+    }
+
+    public synchronized void removePermission(long userId, long deviceId) {
+        if (Arrays.binarySearch(getNotNull(userId), deviceId) < 0) {
+            return;
+        }
+        LongHashMap<DeviceList> newPermissions = copy(permissions);
+        if (removePermission(newPermissions, userId, deviceId)) {
+            permissions = newPermissions;
+        }
+    }
+
+    private static boolean removePermission(LongHashMap<DeviceList> permissions, long userId, long deviceId) {
+        DeviceList list = permissions.get(userId);
+        if (list != null) {
+            long[] devices = list.devices;
+            int index = Arrays.binarySearch(devices, deviceId);
+            if (index >= 0) {
+                long[] newDevices = new long[devices.length - 1];
+                System.arraycopy(devices, 0, newDevices, 0, index);
+                System.arraycopy(devices, index + 1, newDevices, index, devices.length - index - 1);
+                permissions.put(userId, new DeviceList(newDevices));
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public synchronized void removeDevice(long deviceId) {
+        LongHashMap<DeviceList> newPermissions = null;
+        for (DeviceList list : permissions.values()) {
+            if (list.contains(deviceId)) {
+                newPermissions = copy(permissions);
+                break;
+            }
+        }
+        if (newPermissions != null) {
+            for (long userId : newPermissions.keys()) {
+                removePermission(newPermissions, userId, deviceId);
+            }
+            permissions = newPermissions;
+        }
+    }
+
     public void checkAdmin(long userId) throws SecurityException {
-        if (!users.containsKey(userId) || !users.get(userId).getAdmin()) {
+        User user = users.get(userId);
+        if (user == null || !user.getAdmin()) {
             throw new SecurityException("Admin access required");
         }
     }
@@ -73,11 +255,11 @@ public class PermissionsManager {
     }
 
     public Collection<Long> allowedDevices(long userId) {
-        return getNotNull(userId);
+        return getListNotNull(userId);
     }
 
     public void checkDevice(long userId, long deviceId) throws SecurityException {
-        if (!getNotNull(userId).contains(deviceId)) {
+        if (Arrays.binarySearch(getNotNull(userId), deviceId) < 0) {
             throw new SecurityException("Device access denied");
         }
     }
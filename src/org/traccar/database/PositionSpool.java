@@ -0,0 +1,322 @@
+/*
+ * Copyright 2015 Anton Tananaev (anton.tananaev@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.database;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import javax.json.Json;
+import javax.json.JsonException;
+import javax.json.JsonReader;
+import org.traccar.Config;
+import org.traccar.helper.Log;
+import org.traccar.model.Position;
+import org.traccar.web.JsonConverter;
+
+/**
+ * Circular memory-mapped file for positions that couldn't be stored in the database.
+ * Records are length prefixed, record that doesn't fit before the end of the file is written from the beginning.
+ */
+public class PositionSpool implements Runnable {
+
+    private static final int DEFAULT_SIZE = 64; // megabytes
+    private static final int DEFAULT_BATCH_SIZE = 500;
+    private static final long DEFAULT_INTERVAL = 5000;
+
+    private static final int HEADER_SIZE = 16;
+    private static final int WRAP_MARKER = -1;
+
+    private final DataManager dataManager;
+    private final RandomAccessFile file;
+    private final MappedByteBuffer buffer;
+    private final int batchSize;
+    private final long interval;
+
+    private int readOffset;
+    private int writeOffset;
+    private int usedBytes;
+    private int count;
+
+    private Thread thread;
+    private volatile boolean running;
+
+    /**
+     * Position of reading, wrap padding is counted in remaining bytes
+     */
+    static final class Cursor {
+
+        private int offset;
+        private int remaining;
+        private int consumed;
+        private int records;
+
+        private Cursor(int offset, int remaining) {
+            this.offset = offset;
+            this.remaining = remaining;
+        }
+
+    }
+
+    public PositionSpool(DataManager dataManager, Config config) throws IOException {
+        this.dataManager = dataManager;
+        batchSize = config.getInteger("spool.batchSize", DEFAULT_BATCH_SIZE);
+        interval = config.getLong("spool.interval", DEFAULT_INTERVAL);
+
+        file = new RandomAccessFile(config.getString("spool.file"), "rw");
+        buffer = file.getChannel().map(
+                FileChannel.MapMode.READ_WRITE, 0, config.getInteger("spool.size", DEFAULT_SIZE) * 1024L * 1024L);
+
+        readOffset = buffer.getInt(0);
+        writeOffset = buffer.getInt(4);
+        usedBytes = buffer.getInt(8);
+        if (readOffset < HEADER_SIZE || readOffset > buffer.capacity()
+                || writeOffset < HEADER_SIZE || writeOffset > buffer.capacity()
+                || usedBytes < 0 || usedBytes > getCapacity()) {
+            clear();
+        }
+
+        Cursor cursor = new Cursor(readOffset, usedBytes);
+        while (next(cursor, null)) {
+            continue;
+        }
+        count = cursor.records;
+        if (cursor.remaining > 0) {
+            truncate(cursor);
+        }
+        if (count > 0) {
+            Log.info("Position spool contains " + count + " positions");
+        }
+    }
+
+    private void writeHeader() {
+        buffer.putInt(0, readOffset);
+        buffer.putInt(4, writeOffset);
+        buffer.putInt(8, usedBytes);
+    }
+
+    private void clear() {
+        readOffset = HEADER_SIZE;
+        writeOffset = HEADER_SIZE;
+        usedBytes = 0;
+        writeHeader();
+    }
+
+    /**
+     * Number of positions waiting to be stored
+     */
+    public synchronized int getSize() {
+        return count;
+    }
+
+    public synchronized int getUsedBytes() {
+        return usedBytes;
+    }
+
+    public int getCapacity() {
+        return buffer.capacity() - HEADER_SIZE;
+    }
+
+    /**
+     * Append position to the spool, returns false if there is no space left
+     */
+    public boolean write(Position position) {
+        byte[] data = JsonConverter.objectToJson(position).toString().getBytes(StandardCharsets.UTF_8);
+        synchronized (this) {
+            int length = 4 + data.length;
+            boolean wrap = writeOffset + length > buffer.capacity();
+            int padding = 0;
+            if (wrap) {
+                padding = buffer.capacity() - writeOffset;
+            }
+            if (usedBytes + padding + length > getCapacity()) {
+                return false;
+            }
+            if (wrap) {
+                if (padding >= 4) {
+                    buffer.putInt(writeOffset, WRAP_MARKER);
+                }
+                writeOffset = HEADER_SIZE;
+                usedBytes += padding;
+            }
+            ByteBuffer target = buffer.duplicate();
+            target.position(writeOffset);
+            target.putInt(data.length);
+            target.put(data);
+            writeOffset = target.position();
+            usedBytes += length;
+            count++;
+            writeHeader();
+        }
+        return true;
+    }
+
+    public void write(List<Position> positions) {
+        for (Position position : positions) {
+            if (!write(position)) {
+                Log.warning("Position spool is full");
+                break;
+            }
+        }
+    }
+
+    /**
+     * Move cursor over the next record, decoding it if the list is provided.
+     * Returns false at the end of data or at a corrupted record, which leaves remaining bytes above zero.
+     */
+    private boolean next(Cursor cursor, List<Position> positions) {
+        if (cursor.remaining <= 0) {
+            return false;
+        }
+        int tail = buffer.capacity() - cursor.offset;
+        if (tail < 4 || buffer.getInt(cursor.offset) == WRAP_MARKER) {
+            if (tail > cursor.remaining) {
+                return false;
+            }
+            cursor.offset = HEADER_SIZE;
+            cursor.remaining -= tail;
+            cursor.consumed += tail;
+            return next(cursor, positions);
+        }
+        int length = buffer.getInt(cursor.offset);
+        if (length <= 0 || 4 + length > Math.min(tail, cursor.remaining)) {
+            return false;
+        }
+        if (positions != null) {
+            byte[] data = new byte[length];
+            ByteBuffer source = buffer.duplicate();
+            source.position(cursor.offset + 4);
+            source.get(data);
+            try (JsonReader reader = Json.createReader(new StringReader(new String(data, StandardCharsets.UTF_8)))) {
+                positions.add(JsonConverter.objectFromJson(reader.readObject(), new Position()));
+            } catch (JsonException error) {
+                Log.warning("Skipping corrupted spool record", error);
+            }
+        }
+        cursor.offset += 4 + length;
+        cursor.remaining -= 4 + length;
+        cursor.consumed += 4 + length;
+        cursor.records++;
+        return true;
+    }
+
+    /**
+     * Corrupted record has no reliable length, so everything from it to the end of data is dropped
+     */
+    private void truncate(Cursor cursor) {
+        Log.warning("Position spool is corrupted, dropping " + cursor.remaining + " bytes");
+        writeOffset = cursor.offset;
+        usedBytes -= cursor.remaining;
+        cursor.remaining = 0;
+        writeHeader();
+    }
+
+    synchronized Cursor read(List<Position> positions) {
+        Cursor cursor = new Cursor(readOffset, usedBytes);
+        while (positions.size() < batchSize) {
+            if (!next(cursor, positions)) {
+                if (cursor.remaining > 0) {
+                    count = cursor.records;
+                    truncate(cursor);
+                }
+                break;
+            }
+        }
+        return cursor;
+    }
+
+    /**
+     * Release space of records read by the cursor, positions written since reading are kept
+     */
+    synchronized boolean commit(Cursor cursor) {
+        if (cursor.consumed == 0) {
+            return false;
+        }
+        readOffset = cursor.offset;
+        usedBytes -= cursor.consumed;
+        count -= cursor.records;
+        if (usedBytes == 0) {
+            readOffset = HEADER_SIZE;
+            writeOffset = HEADER_SIZE;
+        }
+        writeHeader();
+        return true;
+    }
+
+    public void start() {
+        running = true;
+        thread = new Thread(this, "position-spool");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public void stop() {
+        running = false;
+        if (thread != null) {
+            synchronized (this) {
+                notifyAll();
+            }
+            try {
+                thread.join();
+            } catch (InterruptedException error) {
+                Log.warning(error);
+            }
+            thread = null;
+        }
+        buffer.force();
+        try {
+            file.close();
+        } catch (IOException error) {
+            Log.warning(error);
+        }
+    }
+
+    @Override
+    public void run() {
+        List<Position> positions = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                positions.clear();
+                Cursor cursor = read(positions);
+                if (!positions.isEmpty()) {
+                    dataManager.addPositions(positions);
+                }
+                if (commit(cursor)) {
+                    Log.info("Position spool replayed " + positions.size() + " remaining " + getSize());
+                    continue;
+                }
+                buffer.force();
+            } catch (Exception error) {
+                Log.warning(error);
+            }
+            synchronized (this) {
+                try {
+                    if (running) {
+                        wait(interval);
+                    }
+                } catch (InterruptedException error) {
+                    return;
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,298 @@
+/*
+ * Copyright 2015 Anton Tananaev (anton.tananaev@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.database;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.traccar.Config;
+import org.traccar.Context;
+import org.traccar.DeferredResponse;
+import org.traccar.PositionBatch;
+import org.traccar.helper.Log;
+import org.traccar.model.Position;
+
+/**
+ * Asynchronous position persistence, positions are queued and stored using batch inserts
+ */
+public class PositionWriter implements Runnable {
+
+    private static final int DEFAULT_QUEUE_SIZE = 10000;
+    private static final int DEFAULT_BATCH_SIZE = 500;
+    private static final long DEFAULT_FLUSH_INTERVAL = 1000;
+
+    private static final class Entry {
+
+        private final Position position;
+        private final boolean latest;
+        private final DeferredResponse response;
+
+        private Entry(Position position, boolean latest, DeferredResponse response) {
+            this.position = position;
+            this.latest = latest;
+            this.response = response;
+        }
+
+    }
+
+    private final DataManager dataManager;
+    private final PositionSpool spool;
+    private final BlockingQueue<Entry> queue;
+    private final Semaphore queueSpace;
+    private final int batchSize;
+    private final long flushInterval;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicBoolean overloaded = new AtomicBoolean();
+    private final int highWatermark;
+    private final int lowWatermark;
+
+    private Thread thread;
+    private volatile boolean running;
+
+    public PositionWriter(DataManager dataManager, PositionSpool spool, Config config) {
+        this.dataManager = dataManager;
+        this.spool = spool;
+        int queueSize = config.getInteger("writer.queueSize", DEFAULT_QUEUE_SIZE);
+        queue = new ArrayBlockingQueue<>(queueSize);
+        queueSpace = new Semaphore(queueSize);
+        batchSize = config.getInteger("writer.batchSize", DEFAULT_BATCH_SIZE);
+        flushInterval = config.getLong("writer.flushInterval", DEFAULT_FLUSH_INTERVAL);
+        highWatermark = config.getInteger("writer.highWatermark", queueSize * 8 / 10);
+        lowWatermark = config.getInteger("writer.lowWatermark", queueSize / 2);
+    }
+
+    /**
+     * Number of positions queued or being stored
+     */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public boolean isOverloaded() {
+        return overloaded.get();
+    }
+
+    /**
+     * Watermarks are checked again under the lock, a producer and the writer thread may both see stale state
+     */
+    private synchronized void updateOverloaded() {
+        int current = inFlight.get();
+        boolean value;
+        if (!overloaded.get() && current > highWatermark) {
+            value = true;
+        } else if (overloaded.get() && current < lowWatermark) {
+            value = false;
+        } else {
+            return;
+        }
+        overloaded.set(value);
+        if (value) {
+            Log.warning("Position writer overloaded, in flight " + current);
+        } else {
+            Log.warning("Position writer recovered, in flight " + current);
+        }
+        if (Context.getServerManager() != null) {
+            Context.getServerManager().setReadable(!value);
+        }
+    }
+
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    public int getQueueCapacity() {
+        return queue.size() + queue.remainingCapacity();
+    }
+
+    /**
+     * Queue position for storing, returns false if the queue is full
+     */
+    public boolean write(Position position, boolean latest) {
+        return write(position, latest, null);
+    }
+
+    /**
+     * Queue position with a response completed after the batch containing the position is committed
+     */
+    public boolean write(Position position, boolean latest, DeferredResponse response) {
+        if (!queueSpace.tryAcquire()) {
+            return false;
+        }
+        queue.add(new Entry(position, latest, response));
+        if (inFlight.incrementAndGet() > highWatermark && !overloaded.get()) {
+            updateOverloaded();
+        }
+        return true;
+    }
+
+    /**
+     * Queue all positions of a message or none of them, so that a device retransmitting a rejected message doesn't
+     * create duplicates. Response is sent after all positions are committed.
+     *
+     * @param latest flags for positions in the batch order
+     */
+    public boolean write(PositionBatch batch, boolean[] latest) {
+        if (!queueSpace.tryAcquire(batch.size())) {
+            return false;
+        }
+        DeferredResponse response = batch.getResponse();
+        if (response != null) {
+            response.expect(batch.size());
+        }
+        int index = 0;
+        for (Position position : batch) {
+            queue.add(new Entry(position, latest[index++], response));
+        }
+        if (inFlight.addAndGet(batch.size()) > highWatermark && !overloaded.get()) {
+            updateOverloaded();
+        }
+        return true;
+    }
+
+    public void start() {
+        running = true;
+        thread = new Thread(this, "position-writer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public void stop() {
+        running = false;
+        if (thread != null) {
+            try {
+                thread.join();
+            } catch (InterruptedException error) {
+                Log.warning(error);
+            }
+            thread = null;
+        }
+    }
+
+    @Override
+    public void run() {
+        List<Entry> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                Entry entry = queue.poll(flushInterval, TimeUnit.MILLISECONDS);
+                if (entry == null) {
+                    continue;
+                }
+                batch.add(entry);
+
+                long deadline = System.currentTimeMillis() + flushInterval;
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long delay = deadline - System.currentTimeMillis();
+                    if (batch.size() >= batchSize || delay <= 0) {
+                        break;
+                    }
+                    entry = queue.poll(delay, TimeUnit.MILLISECONDS);
+                    if (entry == null) {
+                        break;
+                    }
+                    batch.add(entry);
+                }
+            } catch (InterruptedException error) {
+                Log.warning(error);
+            }
+            queueSpace.release(batch.size());
+            flush(batch);
+        }
+
+        // Store remaining positions on shutdown
+        queue.drainTo(batch);
+        queueSpace.release(batch.size());
+        while (!batch.isEmpty()) {
+            List<Entry> part = new ArrayList<>(batch.subList(0, Math.min(batchSize, batch.size())));
+            batch.subList(0, part.size()).clear();
+            flush(part);
+        }
+    }
+
+    private void flush(List<Entry> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        List<Position> positions = new ArrayList<>(batch.size());
+        Map<Long, Position> latestPositions = new HashMap<>();
+        for (Entry entry : batch) {
+            positions.add(entry.position);
+        }
+
+        try {
+            dataManager.addPositions(positions);
+        } catch (Exception error) {
+            Log.warning(error);
+            List<Position> spooled = new ArrayList<>(positions.size());
+            for (Entry entry : batch) {
+                if (entry.response != null) {
+                    entry.response.fail();
+                } else {
+                    spooled.add(entry.position);
+                }
+            }
+            if (spool != null && !spooled.isEmpty()) {
+                spool.write(spooled);
+            }
+            release(batch);
+            return;
+        }
+
+        for (Entry entry : batch) {
+            if (entry.response != null) {
+                entry.response.complete();
+            }
+        }
+
+        try {
+            for (Entry entry : batch) {
+                if (entry.latest && entry.position.getId() != 0) {
+                    Position last = latestPositions.get(entry.position.getDeviceId());
+                    if (last == null || entry.position.getFixTime().compareTo(last.getFixTime()) > 0) {
+                        latestPositions.put(entry.position.getDeviceId(), entry.position);
+                    }
+                }
+            }
+            if (!latestPositions.isEmpty()) {
+                dataManager.updateLatestPositions(latestPositions.values());
+            }
+        } catch (Exception error) {
+            Log.warning(error);
+        }
+
+        Log.debug("Position writer stored " + positions.size() + " queue " + queue.size());
+
+        release(batch);
+    }
+
+    private void release(List<Entry> batch) {
+        // Checked under the lock once per batch, overload may be just being set by a producer
+        if (inFlight.addAndGet(-batch.size()) < lowWatermark) {
+            updateOverloaded();
+        }
+        batch.clear();
+    }
+
+}
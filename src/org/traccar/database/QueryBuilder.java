@@ -15,6 +15,7 @@
  */
 package org.traccar.database;
 
+import java.io.IOException;
 import java.io.StringReader;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
@@ -26,40 +27,114 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Timestamp;
 import java.sql.Types;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 import javax.json.Json;
 import javax.json.JsonReader;
 import javax.json.stream.JsonParsingException;
 import javax.sql.DataSource;
 import org.traccar.Context;
 import org.traccar.helper.Log;
+import org.traccar.helper.ModelIntrospector;
+import org.traccar.helper.ModelIntrospector.Property;
 import org.traccar.model.Factory;
 import org.traccar.model.MiscFormatter;
 
 public final class QueryBuilder {
 
-    private final Map<String, List<Integer>> indexMap = new HashMap<>();
+    private static volatile boolean batchGeneratedKeys = true;
+
+    private static final int[] NO_INDEXES = new int[0];
+
+    /**
+     * Query with named parameters replaced by placeholders, immutable and shared between builders
+     */
+    private static final class ParsedQuery {
+
+        private final String query;
+        private final Map<String, int[]> indexMap;
+        private final int parameterCount;
+
+        private ParsedQuery(String query, Map<String, int[]> indexMap) {
+            this.query = query;
+            this.indexMap = indexMap;
+            int count = 0;
+            for (int[] indexes : indexMap.values()) {
+                for (int index : indexes) {
+                    count = Math.max(count, index);
+                }
+            }
+            this.parameterCount = count;
+        }
+
+    }
+
+    // Queries come from configuration, so the number of entries is bounded
+    private static final ConcurrentMap<String, ParsedQuery> QUERY_CACHE = new ConcurrentHashMap<>();
+    private static final AtomicLong QUERY_CACHE_HITS = new AtomicLong();
+    private static final AtomicLong QUERY_CACHE_MISSES = new AtomicLong();
+
+    /**
+     * Null parameter of the given SQL type kept for re-executing batch rows
+     */
+    private static final class NullValue {
+
+        private final int type;
+
+        private NullValue(int type) {
+            this.type = type;
+        }
+
+    }
+
+    private static final NullValue NULL_VARCHAR = new NullValue(Types.VARCHAR);
+    private static final NullValue NULL_TIMESTAMP = new NullValue(Types.TIMESTAMP);
+
+    private Map<String, int[]> indexMap = Collections.emptyMap();
     private Connection connection;
     private PreparedStatement statement;
     private final String query;
     private final boolean returnGeneratedKeys;
 
+    private boolean autoCommit = true;
+    private int batchCount;
+    private boolean batchRowsSeparately;
+    private final List<Long> batchKeys = new LinkedList<>();
+    private Object[] parameters;
+    private final List<Object[]> batchRows = new ArrayList<>();
+
     private QueryBuilder(DataSource dataSource, String query, boolean returnGeneratedKeys) throws SQLException {
         this.query = query;
         this.returnGeneratedKeys = returnGeneratedKeys;
         if (query != null) {
+            ParsedQuery parsedQuery = QUERY_CACHE.get(query);
+            if (parsedQuery != null) {
+                QUERY_CACHE_HITS.incrementAndGet();
+            } else {
+                QUERY_CACHE_MISSES.incrementAndGet();
+                parsedQuery = parse(query.trim());
+                QUERY_CACHE.putIfAbsent(query, parsedQuery);
+            }
+            indexMap = parsedQuery.indexMap;
+            if (returnGeneratedKeys) {
+                // Parameters are kept in case batch rows have to be executed again one by one
+                parameters = new Object[parsedQuery.parameterCount];
+            }
             connection = dataSource.getConnection();
-            String parsedQuery = parse(query.trim(), indexMap);
             try {
                 if (returnGeneratedKeys) {
-                    statement = connection.prepareStatement(parsedQuery, Statement.RETURN_GENERATED_KEYS);
+                    statement = connection.prepareStatement(parsedQuery.query, Statement.RETURN_GENERATED_KEYS);
                 } else {
-                    statement = connection.prepareStatement(parsedQuery);
+                    statement = connection.prepareStatement(parsedQuery.query);
                 }
             } catch (SQLException error) {
                 connection.close();
@@ -68,7 +143,9 @@ public final class QueryBuilder {
         }
     }
 
-    private static String parse(String query, Map<String, List<Integer>> paramMap) {
+    private static ParsedQuery parse(String query) {
+
+        Map<String, List<Integer>> paramMap = new HashMap<>();
 
         int length = query.length();
         StringBuilder parsedQuery = new StringBuilder(length);
@@ -125,7 +202,17 @@ public final class QueryBuilder {
             parsedQuery.append(c);
         }
 
-        return parsedQuery.toString();
+        Map<String, int[]> indexMap = new HashMap<>();
+        for (Map.Entry<String, List<Integer>> entry : paramMap.entrySet()) {
+            int[] indexes = new int[entry.getValue().size()];
+            int i = 0;
+            for (int value : entry.getValue()) {
+                indexes[i++] = value;
+            }
+            indexMap.put(entry.getKey(), indexes);
+        }
+
+        return new ParsedQuery(parsedQuery.toString(), indexMap);
     }
 
     public static QueryBuilder create(DataSource dataSource, String query) throws SQLException {
@@ -137,19 +224,33 @@ public final class QueryBuilder {
         return new QueryBuilder(dataSource, query, returnGeneratedKeys);
     }
 
-    private List<Integer> indexes(String name) {
-        name = name.toLowerCase();
-        List<Integer> result = indexMap.get(name);
+    public static long getQueryCacheHits() {
+        return QUERY_CACHE_HITS.get();
+    }
+
+    public static long getQueryCacheMisses() {
+        return QUERY_CACHE_MISSES.get();
+    }
+
+    private int[] indexes(String name) {
+        int[] result = indexMap.get(name.toLowerCase());
         if (result == null) {
-            result = new LinkedList<>();
+            result = NO_INDEXES;
         }
         return result;
     }
 
+    private void keepParameter(int index, Object value) {
+        if (parameters != null) {
+            parameters[index - 1] = value;
+        }
+    }
+
     public QueryBuilder setBoolean(String name, boolean value) throws SQLException {
         for (int i : indexes(name)) {
             try {
                 statement.setBoolean(i, value);
+                keepParameter(i, value);
             } catch (SQLException error) {
                 statement.close();
                 connection.close();
@@ -163,6 +264,7 @@ public final class QueryBuilder {
         for (int i : indexes(name)) {
             try {
                 statement.setInt(i, value);
+                keepParameter(i, value);
             } catch (SQLException error) {
                 statement.close();
                 connection.close();
@@ -176,6 +278,7 @@ public final class QueryBuilder {
         for (int i : indexes(name)) {
             try {
                 statement.setLong(i, value);
+                keepParameter(i, value);
             } catch (SQLException error) {
                 statement.close();
                 connection.close();
@@ -189,6 +292,7 @@ public final class QueryBuilder {
         for (int i : indexes(name)) {
             try {
                 statement.setDouble(i, value);
+                keepParameter(i, value);
             } catch (SQLException error) {
                 statement.close();
                 connection.close();
@@ -203,8 +307,10 @@ public final class QueryBuilder {
             try {
                 if (value == null) {
                     statement.setNull(i, Types.VARCHAR);
+                    keepParameter(i, NULL_VARCHAR);
                 } else {
                     statement.setString(i, value);
+                    keepParameter(i, value);
                 }
             } catch (SQLException error) {
                 statement.close();
@@ -220,8 +326,11 @@ public final class QueryBuilder {
             try {
                 if (value == null) {
                     statement.setNull(i, Types.TIMESTAMP);
+                    keepParameter(i, NULL_TIMESTAMP);
                 } else {
-                    statement.setTimestamp(i, new Timestamp(value.getTime()));
+                    Timestamp timestamp = new Timestamp(value.getTime());
+                    statement.setTimestamp(i, timestamp);
+                    keepParameter(i, timestamp);
                 }
             } catch (SQLException error) {
                 statement.close();
@@ -234,30 +343,38 @@ public final class QueryBuilder {
 
     public QueryBuilder setObject(Object object) throws SQLException {
 
-        Method[] methods = object.getClass().getMethods();
-
-        for (Method method : methods) {
-            if (method.getName().startsWith("get") && method.getParameterTypes().length == 0) {
-                String name = method.getName().substring(3);
+        for (Property property : ModelIntrospector.getGetters(object.getClass())) {
+            if (indexMap.containsKey(property.getLowerCaseName())) {
                 try {
-                    if (method.getReturnType().equals(boolean.class)) {
-                        setBoolean(name, (Boolean) method.invoke(object));
-                    } else if (method.getReturnType().equals(int.class)) {
-                        setInteger(name, (Integer) method.invoke(object));
-                    } else if (method.getReturnType().equals(long.class)) {
-                        setLong(name, (Long) method.invoke(object));
-                    } else if (method.getReturnType().equals(double.class)) {
-                        setDouble(name, (Double) method.invoke(object));
-                    } else if (method.getReturnType().equals(String.class)) {
-                        setString(name, (String) method.invoke(object));
-                    } else if (method.getReturnType().equals(Date.class)) {
-                        setDate(name, (Date) method.invoke(object));
-                    } else if (method.getReturnType().equals(Map.class)) {
-                        if (Context.getConfig().getBoolean("database.xml")) {
-                            setString(name, MiscFormatter.toXmlString((Map) method.invoke(object)));
-                        } else {
-                            setString(name, MiscFormatter.toJsonString((Map) method.invoke(object)));
-                        }
+                    Object value = property.getMethod().invoke(object);
+                    switch (property.getType()) {
+                        case BOOLEAN:
+                            setBoolean(property.getLowerCaseName(), (Boolean) value);
+                            break;
+                        case INTEGER:
+                            setInteger(property.getLowerCaseName(), (Integer) value);
+                            break;
+                        case LONG:
+                            setLong(property.getLowerCaseName(), (Long) value);
+                            break;
+                        case DOUBLE:
+                            setDouble(property.getLowerCaseName(), (Double) value);
+                            break;
+                        case STRING:
+                            setString(property.getLowerCaseName(), (String) value);
+                            break;
+                        case DATE:
+                            setDate(property.getLowerCaseName(), (Date) value);
+                            break;
+                        case MAP:
+                            if (Context.getConfig().getBoolean("database.xml")) {
+                                setString(property.getLowerCaseName(), MiscFormatter.toXmlString((Map) value));
+                            } else {
+                                setString(property.getLowerCaseName(), MiscFormatter.toJsonString((Map) value));
+                            }
+                            break;
+                        default:
+                            break;
                     }
                 } catch (IllegalAccessException | InvocationTargetException error) {
                     Log.warning(error);
@@ -272,6 +389,97 @@ public final class QueryBuilder {
         void process(T object, ResultSet resultSet) throws SQLException;
     }
 
+    private static <T> ResultSetProcessor<T> createProcessor(final Property property, final int column) {
+        final Method method = property.getMethod();
+        switch (property.getType()) {
+            case BOOLEAN:
+                return new ResultSetProcessor<T>() {
+                    @Override
+                    public void process(T object, ResultSet resultSet) throws SQLException {
+                        try {
+                            method.invoke(object, resultSet.getBoolean(column));
+                        } catch (IllegalAccessException | InvocationTargetException error) {
+                            Log.warning(error);
+                        }
+                    }
+                };
+            case INTEGER:
+                return new ResultSetProcessor<T>() {
+                    @Override
+                    public void process(T object, ResultSet resultSet) throws SQLException {
+                        try {
+                            method.invoke(object, resultSet.getInt(column));
+                        } catch (IllegalAccessException | InvocationTargetException error) {
+                            Log.warning(error);
+                        }
+                    }
+                };
+            case LONG:
+                return new ResultSetProcessor<T>() {
+                    @Override
+                    public void process(T object, ResultSet resultSet) throws SQLException {
+                        try {
+                            method.invoke(object, resultSet.getLong(column));
+                        } catch (IllegalAccessException | InvocationTargetException error) {
+                            Log.warning(error);
+                        }
+                    }
+                };
+            case DOUBLE:
+                return new ResultSetProcessor<T>() {
+                    @Override
+                    public void process(T object, ResultSet resultSet) throws SQLException {
+                        try {
+                            method.invoke(object, resultSet.getDouble(column));
+                        } catch (IllegalAccessException | InvocationTargetException error) {
+                            Log.warning(error);
+                        }
+                    }
+                };
+            case STRING:
+                return new ResultSetProcessor<T>() {
+                    @Override
+                    public void process(T object, ResultSet resultSet) throws SQLException {
+                        try {
+                            method.invoke(object, resultSet.getString(column));
+                        } catch (IllegalAccessException | InvocationTargetException error) {
+                            Log.warning(error);
+                        }
+                    }
+                };
+            case DATE:
+                return new ResultSetProcessor<T>() {
+                    @Override
+                    public void process(T object, ResultSet resultSet) throws SQLException {
+                        try {
+                            Timestamp timestamp = resultSet.getTimestamp(column);
+                            if (timestamp != null) {
+                                method.invoke(object, new Date(timestamp.getTime()));
+                            }
+                        } catch (IllegalAccessException | InvocationTargetException error) {
+                            Log.warning(error);
+                        }
+                    }
+                };
+            case MAP:
+                return new ResultSetProcessor<T>() {
+                    @Override
+                    public void process(T object, ResultSet resultSet) throws SQLException {
+                        String value = resultSet.getString(column);
+                        if (value != null) {
+                            try (JsonReader reader = Json.createReader(new StringReader(value))) {
+                                method.invoke(object, MiscFormatter.fromJson(reader.readObject()));
+                            } catch (IllegalAccessException | InvocationTargetException | JsonParsingException error) {
+                                Log.warning(error);
+                            }
+                        }
+                    }
+                };
+            default:
+                return null;
+        }
+    }
+
     public <T extends Factory> T executeQuerySingle(T prototype) throws SQLException {
         Collection<T> result = executeQuery(prototype);
         if (!result.isEmpty()) {
@@ -281,6 +489,24 @@ public final class QueryBuilder {
         }
     }
 
+    private static <T extends Factory> List<ResultSetProcessor<T>> createProcessors(
+            T prototype, ResultSetMetaData resultMetaData) throws SQLException {
+
+        Map<String, Integer> columns = new HashMap<>();
+        for (int i = resultMetaData.getColumnCount(); i >= 1; i--) {
+            columns.put(resultMetaData.getColumnLabel(i).toLowerCase(), i);
+        }
+
+        List<ResultSetProcessor<T>> processors = new ArrayList<>();
+        for (Property property : ModelIntrospector.getSetters(prototype.getClass())) {
+            Integer column = columns.get(property.getLowerCaseName());
+            if (column != null) {
+                processors.add(QueryBuilder.<T>createProcessor(property, column));
+            }
+        }
+        return processors;
+    }
+
     public <T extends Factory> Collection<T> executeQuery(T prototype) throws SQLException {
         List<T> result = new LinkedList<>();
 
@@ -290,125 +516,166 @@ public final class QueryBuilder {
 
                 try (ResultSet resultSet = statement.executeQuery()) {
 
-                    ResultSetMetaData resultMetaData = resultSet.getMetaData();
+                    List<ResultSetProcessor<T>> processors = createProcessors(prototype, resultSet.getMetaData());
+
+                    while (resultSet.next()) {
+                        T object = (T) prototype.create();
+                        for (ResultSetProcessor<T> processor : processors) {
+                            processor.process(object, resultSet);
+                        }
+                        result.add(object);
+                    }
+                }
+
+            } finally {
+                statement.close();
+                connection.close();
+            }
+        }
 
-                    List<ResultSetProcessor<T>> processors = new LinkedList<>();
+        return result;
+    }
 
-                    Method[] methods = prototype.getClass().getMethods();
+    /**
+     * Pass rows to the handler as they are read. With positive fetch size the query runs outside of auto-commit
+     * mode, because some drivers (e.g. PostgreSQL) only use cursors within a transaction. Negative fetch size is
+     * passed to the driver as is, MySQL streams rows one by one with Integer.MIN_VALUE.
+     *
+     * @param fetchSize rows fetched from the database at once, 0 for driver default
+     * @param maxRows maximum number of rows, 0 for no limit
+     * @return number of handled rows
+     */
+    public <T extends Factory> int executeQuery(
+            T prototype, int fetchSize, int maxRows, ResultHandler<T> handler) throws SQLException, IOException {
+        int count = 0;
 
-                    for (final Method method : methods) {
-                        if (method.getName().startsWith("set") && method.getParameterTypes().length == 1) {
+        if (query != null) {
 
-                            final String name = method.getName().substring(3);
+            try {
 
-                            // Check if column exists
-                            boolean column = false;
-                            for (int i = 1; i <= resultMetaData.getColumnCount(); i++) {
-                                if (name.equalsIgnoreCase(resultMetaData.getColumnLabel(i))) {
-                                    column = true;
-                                    break;
-                                }
-                            }
-                            if (!column) {
-                                continue;
-                            }
+                if (fetchSize > 0) {
+                    autoCommit = connection.getAutoCommit();
+                    connection.setAutoCommit(false);
+                }
+                statement.setFetchSize(fetchSize);
+                statement.setMaxRows(maxRows);
 
-                            Class<?> parameterType = method.getParameterTypes()[0];
-
-                            if (parameterType.equals(boolean.class)) {
-                                processors.add(new ResultSetProcessor<T>() {
-                                    @Override
-                                    public void process(T object, ResultSet resultSet) throws SQLException {
-                                        try {
-                                            method.invoke(object, resultSet.getBoolean(name));
-                                        } catch (IllegalAccessException | InvocationTargetException error) {
-                                            Log.warning(error);
-                                        }
-                                    }
-                                });
-                            } else if (parameterType.equals(int.class)) {
-                                processors.add(new ResultSetProcessor<T>() {
-                                    @Override
-                                    public void process(T object, ResultSet resultSet) throws SQLException {
-                                        try {
-                                            method.invoke(object, resultSet.getInt(name));
-                                        } catch (IllegalAccessException | InvocationTargetException error) {
-                                            Log.warning(error);
-                                        }
-                                    }
-                                });
-                            } else if (parameterType.equals(long.class)) {
-                                processors.add(new ResultSetProcessor<T>() {
-                                    @Override
-                                    public void process(T object, ResultSet resultSet) throws SQLException {
-                                        try {
-                                            method.invoke(object, resultSet.getLong(name));
-                                        } catch (IllegalAccessException | InvocationTargetException error) {
-                                            Log.warning(error);
-                                        }
-                                    }
-                                });
-                            } else if (parameterType.equals(double.class)) {
-                                processors.add(new ResultSetProcessor<T>() {
-                                    @Override
-                                    public void process(T object, ResultSet resultSet) throws SQLException {
-                                        try {
-                                            method.invoke(object, resultSet.getDouble(name));
-                                        } catch (IllegalAccessException | InvocationTargetException error) {
-                                            Log.warning(error);
-                                        }
-                                    }
-                                });
-                            } else if (parameterType.equals(String.class)) {
-                                processors.add(new ResultSetProcessor<T>() {
-                                    @Override
-                                    public void process(T object, ResultSet resultSet) throws SQLException {
-                                        try {
-                                            method.invoke(object, resultSet.getString(name));
-                                        } catch (IllegalAccessException | InvocationTargetException error) {
-                                            Log.warning(error);
-                                        }
-                                    }
-                                });
-                            } else if (parameterType.equals(Date.class)) {
-                                processors.add(new ResultSetProcessor<T>() {
-                                    @Override
-                                    public void process(T object, ResultSet resultSet) throws SQLException {
-                                        try {
-                                            Timestamp timestamp = resultSet.getTimestamp(name);
-                                            if (timestamp != null) {
-                                                method.invoke(object, new Date(timestamp.getTime()));
-                                            }
-                                        } catch (IllegalAccessException | InvocationTargetException error) {
-                                            Log.warning(error);
-                                        }
-                                    }
-                                });
-                            } else if (parameterType.equals(Map.class)) {
-                                processors.add(new ResultSetProcessor<T>() {
-                                    @Override
-                                    public void process(T object, ResultSet resultSet) throws SQLException {
-                                        try (JsonReader reader = Json.createReader(new StringReader(resultSet.getString(name)))) {
-                                            method.invoke(object, MiscFormatter.fromJson(reader.readObject()));
-                                        } catch (IllegalAccessException | InvocationTargetException | JsonParsingException error) {
-                                            Log.warning(error);
-                                        }
-                                    }
-                                });
-                            }
-                        }
-                    }
+                try (ResultSet resultSet = statement.executeQuery()) {
+
+                    List<ResultSetProcessor<T>> processors = createProcessors(prototype, resultSet.getMetaData());
 
                     while (resultSet.next()) {
                         T object = (T) prototype.create();
                         for (ResultSetProcessor<T> processor : processors) {
                             processor.process(object, resultSet);
                         }
-                        result.add(object);
+                        handler.handle(object);
+                        count++;
                     }
                 }
 
             } finally {
+                try {
+                    if (fetchSize > 0) {
+                        connection.rollback();
+                        connection.setAutoCommit(autoCommit);
+                    }
+                    // Statement is returned to the cache, so limits must not leak to other queries
+                    statement.setFetchSize(0);
+                    statement.setMaxRows(0);
+                } finally {
+                    statement.close();
+                    connection.close();
+                }
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Add current parameters to the batch. If generated keys are requested and the driver is known to not return
+     * keys for batch statements, the row is executed immediately within the same transaction instead.
+     */
+    public QueryBuilder addBatch() throws SQLException {
+        if (query != null) {
+            try {
+                if (batchCount == 0 && batchKeys.isEmpty()) {
+                    autoCommit = connection.getAutoCommit();
+                    connection.setAutoCommit(false);
+                    batchRowsSeparately = returnGeneratedKeys && !batchGeneratedKeys;
+                }
+                if (batchRowsSeparately) {
+                    batchKeys.add(executeRow());
+                } else {
+                    statement.addBatch();
+                    batchCount++;
+                    if (returnGeneratedKeys) {
+                        batchRows.add(parameters.clone());
+                    }
+                }
+            } catch (SQLException error) {
+                connection.rollback();
+                connection.setAutoCommit(autoCommit);
+                statement.close();
+                connection.close();
+                throw error;
+            }
+        }
+        return this;
+    }
+
+    private long executeRow() throws SQLException {
+        statement.executeUpdate();
+        try (ResultSet resultSet = statement.getGeneratedKeys()) {
+            if (resultSet.next()) {
+                return resultSet.getLong(1);
+            }
+        }
+        return 0;
+    }
+
+    public List<Long> executeBatch() throws SQLException {
+        List<Long> result = new LinkedList<>();
+
+        if (query != null) {
+            try {
+                result.addAll(batchKeys);
+                if (batchCount > 0) {
+                    statement.executeBatch();
+                    if (returnGeneratedKeys) {
+                        List<Long> keys = new LinkedList<>();
+                        try (ResultSet resultSet = statement.getGeneratedKeys()) {
+                            while (resultSet.next()) {
+                                keys.add(resultSet.getLong(1));
+                            }
+                        }
+                        if (keys.size() == batchCount) {
+                            result.addAll(keys);
+                        } else {
+                            // Rows without keys can't be matched with positions, so the batch is stored again
+                            Log.info("Driver doesn't return batch generated keys, executing rows separately");
+                            connection.rollback();
+                            for (Object[] row : batchRows) {
+                                for (int i = 0; i < row.length; i++) {
+                                    if (row[i] instanceof NullValue) {
+                                        statement.setNull(i + 1, ((NullValue) row[i]).type);
+                                    } else {
+                                        statement.setObject(i + 1, row[i]);
+                                    }
+                                }
+                                result.add(executeRow());
+                            }
+                            batchGeneratedKeys = false;
+                        }
+                    }
+                }
+                connection.commit();
+            } catch (SQLException error) {
+                connection.rollback();
+                throw error;
+            } finally {
+                connection.setAutoCommit(autoCommit);
                 statement.close();
                 connection.close();
             }
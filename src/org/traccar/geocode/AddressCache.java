@@ -0,0 +1,137 @@
+/*
+ * Copyright 2015 Anton Tananaev (anton.tananaev@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.geocode;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Address cache keyed by coordinates rounded to a grid, so small GPS jitter still hits the same entry.
+ * Entries are split between independently locked LRU segments to reduce contention.
+ */
+public class AddressCache {
+
+    public static final int DEFAULT_PRECISION = 4;
+    public static final int MAX_PRECISION = 7;
+
+    private static final int SEGMENTS = 16;
+    private static final int MIN_SEGMENT_SIZE = 64;
+
+    private final double scale;
+    private final Segment[] segments;
+    private final int mask;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    private final class Segment extends LinkedHashMap<Long, String> {
+
+        private final int capacity;
+
+        private Segment(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, String> eldest) {
+            if (size() > capacity) {
+                evictions.incrementAndGet();
+                return true;
+            }
+            return false;
+        }
+
+    }
+
+    /**
+     * Precision is number of decimal places of coordinate degrees, 4 is a grid cell of about 11 meters
+     */
+    public AddressCache(int size, int precision) {
+        if (precision < 0 || precision > MAX_PRECISION) {
+            throw new IllegalArgumentException("Unsupported cache precision " + precision);
+        }
+        scale = Math.pow(10, precision);
+        int count = 1;
+        while (count < SEGMENTS && count * 2 * MIN_SEGMENT_SIZE <= size) {
+            count *= 2;
+        }
+        segments = new Segment[count];
+        for (int i = 0; i < count; i++) {
+            segments[i] = new Segment((size + count - 1) / count);
+        }
+        mask = count - 1;
+    }
+
+    long getKey(double latitude, double longitude) {
+        long latitudeIndex = Math.round(latitude * scale);
+        long longitudeIndex = Math.round(longitude * scale);
+        return latitudeIndex << 32 | longitudeIndex & 0xffffffffL;
+    }
+
+    private Segment getSegment(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return segments[(int) (hash >>> 32) & mask];
+    }
+
+    public String get(double latitude, double longitude) {
+        long key = getKey(latitude, longitude);
+        Segment segment = getSegment(key);
+        String address;
+        synchronized (segment) {
+            address = segment.get(key);
+        }
+        if (address != null) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+        }
+        return address;
+    }
+
+    public void put(double latitude, double longitude, String address) {
+        long key = getKey(latitude, longitude);
+        Segment segment = getSegment(key);
+        synchronized (segment) {
+            segment.put(key, address);
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+}
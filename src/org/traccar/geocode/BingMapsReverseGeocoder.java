@@ -21,11 +21,11 @@ import javax.json.JsonObject;
 public class BingMapsReverseGeocoder extends JsonReverseGeocoder {
 
     public BingMapsReverseGeocoder() {
-        this("http://dev.virtualearth.net/REST/v1", "ABCDE", 0);
+        this("http://dev.virtualearth.net/REST/v1", "ABCDE", 0, AddressCache.DEFAULT_PRECISION);
     }
 
-    public BingMapsReverseGeocoder(String url, String key, int cacheSize) {
-        super(url + "/Locations/%f,%f?key=" + key + "&include=ciso2", cacheSize);
+    public BingMapsReverseGeocoder(String url, String key, int cacheSize, int cachePrecision) {
+        super(url + "/Locations/%f,%f?key=" + key + "&include=ciso2", cacheSize, cachePrecision);
     }
 
     @Override
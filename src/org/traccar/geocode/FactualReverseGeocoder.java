@@ -20,11 +20,11 @@ import javax.json.JsonObject;
 public class FactualReverseGeocoder extends JsonReverseGeocoder {
 
     public FactualReverseGeocoder() {
-        this("https://api.factual.com/geotag", "ABCDE", 0);
+        this("https://api.factual.com/geotag", "ABCDE", 0, AddressCache.DEFAULT_PRECISION);
     }
 
-    public FactualReverseGeocoder(String url, String key, int cacheSize) {
-        super(url + "?latitude=%f&longitude=%f&KEY=" + key, cacheSize);
+    public FactualReverseGeocoder(String url, String key, int cacheSize, int cachePrecision) {
+        super(url + "?latitude=%f&longitude=%f&KEY=" + key, cacheSize, cachePrecision);
     }
 
     @Override
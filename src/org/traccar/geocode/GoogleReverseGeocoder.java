@@ -22,11 +22,11 @@ import javax.json.JsonString;
 public class GoogleReverseGeocoder extends JsonReverseGeocoder {
 
     public GoogleReverseGeocoder() {
-        this(0);
+        this(0, AddressCache.DEFAULT_PRECISION);
     }
 
-    public GoogleReverseGeocoder(int cacheSize) {
-        super("http://maps.googleapis.com/maps/api/geocode/json?latlng=%f,%f", cacheSize);
+    public GoogleReverseGeocoder(int cacheSize, int cachePrecision) {
+        super("http://maps.googleapis.com/maps/api/geocode/json?latlng=%f,%f", cacheSize, cachePrecision);
     }
 
     @Override
@@ -17,10 +17,6 @@ package org.traccar.geocode;
 
 import com.ning.http.client.AsyncCompletionHandler;
 import com.ning.http.client.Response;
-import java.util.AbstractMap;
-import java.util.Collections;
-import java.util.LinkedHashMap;
-import java.util.Map;
 import javax.json.Json;
 import javax.json.JsonObject;
 import javax.json.JsonReader;
@@ -30,27 +26,26 @@ public abstract class JsonReverseGeocoder implements ReverseGeocoder {
 
     private final String url;
 
-    private Map<Map.Entry<Double, Double>, String> cache;
+    private AddressCache cache;
 
-    public JsonReverseGeocoder(String url, final int cacheSize) {
+    public JsonReverseGeocoder(String url, int cacheSize, int cachePrecision) {
         this.url = url;
         if (cacheSize > 0) {
-            this.cache = Collections.synchronizedMap(new LinkedHashMap<Map.Entry<Double, Double>, String>() {
-                @Override
-                protected boolean removeEldestEntry(Map.Entry eldest) {
-                    return size() > cacheSize;
-                }
-            });
+            this.cache = new AddressCache(cacheSize, cachePrecision);
         }
     }
 
+    public AddressCache getCache() {
+        return cache;
+    }
+
     @Override
     public void getAddress(
             final AddressFormat format, final double latitude,
             final double longitude, final ReverseGeocoderCallback callback) {
 
         if (cache != null) {
-            String cachedAddress = cache.get(new AbstractMap.SimpleImmutableEntry<>(latitude, longitude));
+            String cachedAddress = cache.get(latitude, longitude);
             if (cachedAddress != null) {
                 callback.onResult(cachedAddress);
                 return;
@@ -66,7 +61,7 @@ public abstract class JsonReverseGeocoder implements ReverseGeocoder {
                     if (address != null) {
                         String formattedAddress = format.format(address);
                         if (cache != null) {
-                            cache.put(new AbstractMap.SimpleImmutableEntry<>(latitude, longitude), formattedAddress);
+                            cache.put(latitude, longitude, formattedAddress);
                         }
                         callback.onResult(formattedAddress);
                     } else {
@@ -21,11 +21,11 @@ import javax.json.JsonObject;
 public class MapQuestReverseGeocoder extends JsonReverseGeocoder {
 
     public MapQuestReverseGeocoder() {
-        this("http://www.mapquestapi.com/geocoding/v1/reverse", "ABCDE", 0);
+        this("http://www.mapquestapi.com/geocoding/v1/reverse", "ABCDE", 0, AddressCache.DEFAULT_PRECISION);
     }
 
-    public MapQuestReverseGeocoder(String url, String key, int cacheSize) {
-        super(url + "?key=" + key + "&location=%f,%f", cacheSize);
+    public MapQuestReverseGeocoder(String url, String key, int cacheSize, int cachePrecision) {
+        super(url + "?key=" + key + "&location=%f,%f", cacheSize, cachePrecision);
     }
 
     @Override
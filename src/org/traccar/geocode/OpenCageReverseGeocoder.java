@@ -21,11 +21,11 @@ import javax.json.JsonObject;
 public class OpenCageReverseGeocoder extends JsonReverseGeocoder {
 
     public OpenCageReverseGeocoder() {
-        this("https://api.opencagedata.com/geocode/v1", "ABCDE", 0);
+        this("https://api.opencagedata.com/geocode/v1", "ABCDE", 0, AddressCache.DEFAULT_PRECISION);
     }
 
-    public OpenCageReverseGeocoder(String url, String key, int cacheSize) {
-        super(url + "/json?q=%f,%f&key=" + key, cacheSize);
+    public OpenCageReverseGeocoder(String url, String key, int cacheSize, int cachePrecision) {
+        super(url + "/json?q=%f,%f&key=" + key, cacheSize, cachePrecision);
     }
 
     @Override
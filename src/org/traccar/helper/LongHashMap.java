@@ -0,0 +1,166 @@
+/*
+ * Copyright 2015 Anton Tananaev (anton.tananaev@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.helper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Open addressing map with primitive long keys, null values are not allowed. Not thread-safe.
+ */
+public class LongHashMap<V> {
+
+    private static final int DEFAULT_SIZE = 16;
+
+    private long[] keys;
+    private Object[] values;
+    private int size;
+    private int mask;
+    private int threshold;
+
+    public LongHashMap() {
+        this(DEFAULT_SIZE);
+    }
+
+    public LongHashMap(int expectedSize) {
+        allocate(LongHashSet.tableSize(expectedSize));
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+        threshold = LongHashSet.threshold(capacity);
+    }
+
+    private int find(long key) {
+        int i = LongHashSet.hash(key) & mask;
+        while (values[i] != null && keys[i] != key) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean containsKey(long key) {
+        return values[find(key)] != null;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        return (V) values[find(key)];
+    }
+
+    @SuppressWarnings("unchecked")
+    public V put(long key, V value) {
+        if (value == null) {
+            throw new NullPointerException();
+        }
+        int i = find(key);
+        V oldValue = (V) values[i];
+        keys[i] = key;
+        values[i] = value;
+        if (oldValue == null && ++size > threshold) {
+            resize();
+        }
+        return oldValue;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V remove(long key) {
+        int i = find(key);
+        V oldValue = (V) values[i];
+        if (oldValue != null) {
+            delete(i);
+            size--;
+        }
+        return oldValue;
+    }
+
+    public void clear() {
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    /**
+     * Copy of keys in no particular order
+     */
+    public long[] keys() {
+        long[] result = new long[size];
+        int index = 0;
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null) {
+                result[index++] = keys[i];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Copy of values in no particular order
+     */
+    @SuppressWarnings("unchecked")
+    public List<V> values() {
+        List<V> result = new ArrayList<>(size);
+        for (Object value : values) {
+            if (value != null) {
+                result.add((V) value);
+            }
+        }
+        return result;
+    }
+
+    private void delete(int i) {
+        // Shift following entries back so that lookups don't stop at the gap
+        int j = i;
+        while (true) {
+            j = (j + 1) & mask;
+            if (values[j] == null) {
+                break;
+            }
+            int k = LongHashSet.hash(keys[j]) & mask;
+            if (i <= j ? i < k && k <= j : i < k || k <= j) {
+                continue;
+            }
+            keys[i] = keys[j];
+            values[i] = values[j];
+            i = j;
+        }
+        values[i] = null;
+    }
+
+    private void resize() {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        allocate(oldKeys.length * 2);
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] != null) {
+                int j = find(oldKeys[i]);
+                keys[j] = oldKeys[i];
+                values[j] = oldValues[i];
+            }
+        }
+    }
+
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright 2015 Anton Tananaev (anton.tananaev@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.helper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Open addressing set of primitive long values. Not thread-safe.
+ */
+public class LongHashSet {
+
+    private static final int DEFAULT_SIZE = 16;
+
+    private static final long EMPTY = 0;
+
+    private long[] keys;
+    private boolean containsEmpty;
+    private int size;
+    private int mask;
+    private int threshold;
+
+    static int tableSize(int expectedSize) {
+        int capacity = 4;
+        while (threshold(capacity) < expectedSize) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    static int threshold(int capacity) {
+        return (int) (capacity * 2L / 3);
+    }
+
+    static int hash(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    public LongHashSet() {
+        this(DEFAULT_SIZE);
+    }
+
+    public LongHashSet(int expectedSize) {
+        allocate(tableSize(expectedSize));
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        mask = capacity - 1;
+        threshold = threshold(capacity);
+    }
+
+    private int find(long key) {
+        int i = hash(key) & mask;
+        while (keys[i] != EMPTY && keys[i] != key) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean contains(long key) {
+        if (key == EMPTY) {
+            return containsEmpty;
+        }
+        return keys[find(key)] != EMPTY;
+    }
+
+    public boolean add(long key) {
+        if (key == EMPTY) {
+            if (containsEmpty) {
+                return false;
+            }
+            containsEmpty = true;
+            size++;
+            return true;
+        }
+        int i = find(key);
+        if (keys[i] != EMPTY) {
+            return false;
+        }
+        keys[i] = key;
+        if (++size > threshold) {
+            resize();
+        }
+        return true;
+    }
+
+    public boolean remove(long key) {
+        if (key == EMPTY) {
+            if (!containsEmpty) {
+                return false;
+            }
+            containsEmpty = false;
+            size--;
+            return true;
+        }
+        int i = find(key);
+        if (keys[i] == EMPTY) {
+            return false;
+        }
+        delete(i);
+        size--;
+        return true;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, EMPTY);
+        containsEmpty = false;
+        size = 0;
+    }
+
+    /**
+     * Copy of values in no particular order
+     */
+    public long[] toArray() {
+        long[] result = new long[size];
+        int index = 0;
+        if (containsEmpty) {
+            result[index++] = EMPTY;
+        }
+        for (long key : keys) {
+            if (key != EMPTY) {
+                result[index++] = key;
+            }
+        }
+        return result;
+    }
+
+    public List<Long> toList() {
+        List<Long> result = new ArrayList<>(size);
+        for (long key : toArray()) {
+            result.add(key);
+        }
+        return result;
+    }
+
+    private void delete(int i) {
+        // Shift following entries back so that lookups don't stop at the gap
+        int j = i;
+        while (true) {
+            j = (j + 1) & mask;
+            if (keys[j] == EMPTY) {
+                break;
+            }
+            int k = hash(keys[j]) & mask;
+            if (i <= j ? i < k && k <= j : i < k || k <= j) {
+                continue;
+            }
+            keys[i] = keys[j];
+            i = j;
+        }
+        keys[i] = EMPTY;
+    }
+
+    private void resize() {
+        long[] oldKeys = keys;
+        allocate(oldKeys.length * 2);
+        for (long key : oldKeys) {
+            if (key != EMPTY) {
+                keys[find(key)] = key;
+            }
+        }
+    }
+
+}
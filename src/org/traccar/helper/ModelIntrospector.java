@@ -0,0 +1,134 @@
+/*
+ * Copyright 2015 Anton Tananaev (anton.tananaev@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.helper;
+
+import java.beans.Introspector;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Getters and setters of model classes, collected once per class and shared by JSON and database mapping
+ */
+public final class ModelIntrospector {
+
+    private ModelIntrospector() {
+    }
+
+    public enum PropertyType {
+        BOOLEAN, INTEGER, LONG, DOUBLE, STRING, DATE, MAP
+    }
+
+    /**
+     * Model getter or setter of a supported type
+     */
+    public static final class Property {
+
+        private final String name;
+        private final String lowerCaseName;
+        private final PropertyType type;
+        private final Method method;
+
+        private Property(String name, PropertyType type, Method method) {
+            this.name = name;
+            this.lowerCaseName = name.toLowerCase();
+            this.type = type;
+            this.method = method;
+        }
+
+        /**
+         * Bean property name, for example "deviceId"
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Lower case name to match query parameters and columns
+         */
+        public String getLowerCaseName() {
+            return lowerCaseName;
+        }
+
+        public PropertyType getType() {
+            return type;
+        }
+
+        public Method getMethod() {
+            return method;
+        }
+
+    }
+
+    // Model classes are fixed, so per-class metadata is collected once
+    private static final ConcurrentMap<Class<?>, Property[]> GETTERS = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<Class<?>, Property[]> SETTERS = new ConcurrentHashMap<>();
+
+    private static PropertyType getPropertyType(Class<?> type) {
+        if (type.equals(boolean.class)) {
+            return PropertyType.BOOLEAN;
+        } else if (type.equals(int.class)) {
+            return PropertyType.INTEGER;
+        } else if (type.equals(long.class)) {
+            return PropertyType.LONG;
+        } else if (type.equals(double.class)) {
+            return PropertyType.DOUBLE;
+        } else if (type.equals(String.class)) {
+            return PropertyType.STRING;
+        } else if (type.equals(Date.class)) {
+            return PropertyType.DATE;
+        } else if (type.equals(Map.class)) {
+            return PropertyType.MAP;
+        }
+        return null;
+    }
+
+    private static Property[] getProperties(Class<?> clazz, ConcurrentMap<Class<?>, Property[]> cache) {
+        Property[] properties = cache.get(clazz);
+        if (properties == null) {
+            boolean setters = cache == SETTERS;
+            List<Property> list = new ArrayList<>();
+            for (Method method : clazz.getMethods()) {
+                Class<?>[] parameterTypes = method.getParameterTypes();
+                PropertyType type = null;
+                if (setters && method.getName().startsWith("set") && parameterTypes.length == 1) {
+                    type = getPropertyType(parameterTypes[0]);
+                } else if (!setters && method.getName().startsWith("get") && parameterTypes.length == 0) {
+                    type = getPropertyType(method.getReturnType());
+                }
+                if (type != null) {
+                    list.add(new Property(Introspector.decapitalize(method.getName().substring(3)), type, method));
+                }
+            }
+            properties = list.toArray(new Property[list.size()]);
+            cache.putIfAbsent(clazz, properties);
+        }
+        return properties;
+    }
+
+    public static Property[] getGetters(Class<?> clazz) {
+        return getProperties(clazz, GETTERS);
+    }
+
+    public static Property[] getSetters(Class<?> clazz) {
+        return getProperties(clazz, SETTERS);
+    }
+
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2015 Anton Tananaev (anton.tananaev@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.helper;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Thread-safe map with primitive long keys. Keys are split between LongHashMap stripes by the high bits of the hash,
+ * each stripe is guarded by its own lock. Null values are not allowed.
+ */
+public class StripedLongHashMap<V> {
+
+    private static final int STRIPE_BITS = 4;
+
+    private final LongHashMap<V>[] stripes;
+
+    public StripedLongHashMap() {
+        this(0);
+    }
+
+    @SuppressWarnings("unchecked")
+    public StripedLongHashMap(int expectedSize) {
+        stripes = new LongHashMap[1 << STRIPE_BITS];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new LongHashMap<>(expectedSize >> STRIPE_BITS);
+        }
+    }
+
+    private LongHashMap<V> stripe(long key) {
+        // Low bits select slot within the stripe, so stripe is selected by the high ones
+        return stripes[LongHashSet.hash(key) >>> (Integer.SIZE - STRIPE_BITS)];
+    }
+
+    public int size() {
+        int size = 0;
+        for (LongHashMap<V> stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.size();
+            }
+        }
+        return size;
+    }
+
+    public V get(long key) {
+        LongHashMap<V> stripe = stripe(key);
+        synchronized (stripe) {
+            return stripe.get(key);
+        }
+    }
+
+    public V put(long key, V value) {
+        LongHashMap<V> stripe = stripe(key);
+        synchronized (stripe) {
+            return stripe.put(key, value);
+        }
+    }
+
+    public V putIfAbsent(long key, V value) {
+        LongHashMap<V> stripe = stripe(key);
+        synchronized (stripe) {
+            V oldValue = stripe.get(key);
+            if (oldValue == null) {
+                stripe.put(key, value);
+            }
+            return oldValue;
+        }
+    }
+
+    /**
+     * Replace value only if the key is currently mapped to the same instance
+     */
+    public boolean replace(long key, V oldValue, V newValue) {
+        LongHashMap<V> stripe = stripe(key);
+        synchronized (stripe) {
+            if (stripe.get(key) == oldValue && oldValue != null) {
+                stripe.put(key, newValue);
+                return true;
+            }
+            return false;
+        }
+    }
+
+    public V remove(long key) {
+        LongHashMap<V> stripe = stripe(key);
+        synchronized (stripe) {
+            return stripe.remove(key);
+        }
+    }
+
+    /**
+     * Remove key only if it is currently mapped to the same instance
+     */
+    public boolean remove(long key, V value) {
+        LongHashMap<V> stripe = stripe(key);
+        synchronized (stripe) {
+            if (stripe.get(key) == value && value != null) {
+                stripe.remove(key);
+                return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Copy of values in no particular order
+     */
+    public List<V> values() {
+        List<V> result = new ArrayList<>();
+        for (LongHashMap<V> stripe : stripes) {
+            synchronized (stripe) {
+                result.addAll(stripe.values());
+            }
+        }
+        return result;
+    }
+
+}
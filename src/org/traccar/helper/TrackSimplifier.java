@@ -0,0 +1,131 @@
+/*
+ * Copyright 2015 Anton Tananaev (anton.tananaev@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.helper;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.traccar.database.ResultHandler;
+import org.traccar.model.Event;
+import org.traccar.model.Position;
+
+/**
+ * Streaming track simplification. Points since the last kept point are held back while all of them are within tolerance
+ * of the line from the last kept point to the newest one, otherwise the previous point is kept and a new segment
+ * starts. First and last points, alarms and events are always kept. At most MAX_DROPPED points are held back, so
+ * memory use doesn't depend on track length.
+ */
+public class TrackSimplifier implements ResultHandler<Position> {
+
+    private static final double EARTH_RADIUS = 6378137;
+    private static final double DEG_TO_RAD = Math.PI / 180;
+
+    private static final double EQUATOR_LENGTH = 2 * Math.PI * EARTH_RADIUS;
+    private static final int TILE_SIZE = 256;
+
+    private static final int MAX_DROPPED = 200;
+
+    private final ResultHandler<Position> handler;
+    private final double tolerance;
+
+    private Position anchor;
+    private final List<Position> dropped = new ArrayList<>();
+
+    public TrackSimplifier(ResultHandler<Position> handler, double tolerance) {
+        this.handler = handler;
+        this.tolerance = tolerance;
+    }
+
+    /**
+     * Size of one map pixel at the equator in meters for the given zoom level
+     */
+    public static double zoomToTolerance(int zoom) {
+        return EQUATOR_LENGTH / TILE_SIZE / Math.pow(2, zoom);
+    }
+
+    private static boolean isImportant(Position position) {
+        return position.getAttributes().containsKey(Event.KEY_ALARM)
+                || position.getAttributes().containsKey(Event.KEY_EVENT);
+    }
+
+    /**
+     * Distance from point to segment in meters, using local equirectangular projection
+     */
+    static double segmentDistance(Position start, Position end, Position point) {
+        double scale = Math.cos(start.getLatitude() * DEG_TO_RAD);
+        double x1 = (end.getLongitude() - start.getLongitude()) * scale;
+        double y1 = end.getLatitude() - start.getLatitude();
+        double x = (point.getLongitude() - start.getLongitude()) * scale;
+        double y = point.getLatitude() - start.getLatitude();
+
+        double length = x1 * x1 + y1 * y1;
+        double t = 0;
+        if (length > 0) {
+            t = Math.max(0, Math.min(1, (x * x1 + y * y1) / length));
+        }
+        double dx = x - t * x1;
+        double dy = y - t * y1;
+        return Math.sqrt(dx * dx + dy * dy) * DEG_TO_RAD * EARTH_RADIUS;
+    }
+
+    private void keep(Position position) throws IOException {
+        handler.handle(position);
+        anchor = position;
+    }
+
+    /**
+     * Check that all held back points are within tolerance of the line from the last kept point to the given one
+     */
+    private boolean fits(Position position) {
+        for (Position point : dropped) {
+            if (segmentDistance(anchor, position, point) >= tolerance) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void handle(Position position) throws IOException {
+        if (anchor == null) {
+            keep(position);
+            return;
+        }
+
+        if (!dropped.isEmpty() && (dropped.size() >= MAX_DROPPED || !fits(position))) {
+            keep(dropped.get(dropped.size() - 1));
+            dropped.clear();
+        }
+
+        if (isImportant(position)) {
+            keep(position);
+            dropped.clear();
+        } else {
+            dropped.add(position);
+        }
+    }
+
+    /**
+     * Pass the last point, must be called after the last position
+     */
+    public void finish() throws IOException {
+        if (!dropped.isEmpty()) {
+            keep(dropped.get(dropped.size() - 1));
+            dropped.clear();
+        }
+    }
+
+}
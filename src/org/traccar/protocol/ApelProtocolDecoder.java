@@ -67,7 +67,7 @@ public class ApelProtocolDecoder extends BaseProtocolDecoder {
     public static final short MSG_GPRS_COMMAND = 180;
 
     private void sendSimpleMessage(Channel channel, short type) {
-        ChannelBuffer request = ChannelBuffers.directBuffer(ByteOrder.LITTLE_ENDIAN, 8);
+        ChannelBuffer request = ChannelBuffers.buffer(ByteOrder.LITTLE_ENDIAN, 8);
         request.writeShort(type);
         request.writeShort(0);
         request.writeInt(Checksum.crc32(request.toByteBuffer(0, 4)));
@@ -78,7 +78,7 @@ public class ApelProtocolDecoder extends BaseProtocolDecoder {
         if (lastIndex == 0) {
             lastIndex = newIndex;
         } else if (newIndex > lastIndex) {
-            ChannelBuffer request = ChannelBuffers.directBuffer(ByteOrder.LITTLE_ENDIAN, 14);
+            ChannelBuffer request = ChannelBuffers.buffer(ByteOrder.LITTLE_ENDIAN, 14);
             request.writeShort(MSG_REQUEST_LOG_RECORDS);
             request.writeShort(6);
             request.writeInt((int) lastIndex);
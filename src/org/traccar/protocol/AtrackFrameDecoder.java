@@ -28,6 +28,11 @@ public class AtrackFrameDecoder extends LengthFieldBasedFrameDecoder {
         super(1024, 4, 2);
     }
 
+    @Override
+    protected ChannelBuffer extractFrame(ChannelBuffer buffer, int index, int length) {
+        return buffer.slice(index, length);
+    }
+
     @Override
     protected Object decode(
             ChannelHandlerContext ctx, Channel channel, ChannelBuffer buf) throws Exception {
@@ -35,7 +40,7 @@ public class AtrackFrameDecoder extends LengthFieldBasedFrameDecoder {
         // Keep alive message
         if (buf.readableBytes() >= KEEPALIVE_LENGTH
                 && buf.getUnsignedShort(buf.readerIndex()) == 0xfe02) {
-            return buf.readBytes(KEEPALIVE_LENGTH);
+            return buf.readSlice(KEEPALIVE_LENGTH);
         }
 
         return super.decode(ctx, channel, buf);
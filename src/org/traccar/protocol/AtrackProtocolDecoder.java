@@ -38,7 +38,7 @@ public class AtrackProtocolDecoder extends BaseProtocolDecoder {
 
     private static void sendResponse(Channel channel, SocketAddress remoteAddress, long rawId, int index) {
         if (channel != null) {
-            ChannelBuffer response = ChannelBuffers.directBuffer(12);
+            ChannelBuffer response = ChannelBuffers.buffer(12);
             response.writeShort(0xfe02);
             response.writeLong(rawId);
             response.writeShort(index);
@@ -18,9 +18,9 @@ package org.traccar.protocol;
 import org.jboss.netty.buffer.ChannelBuffer;
 import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.ChannelHandlerContext;
-import org.jboss.netty.handler.codec.frame.FrameDecoder;
+import org.traccar.BaseFrameDecoder;
 
-public class AutoFon45FrameDecoder extends FrameDecoder {
+public class AutoFon45FrameDecoder extends BaseFrameDecoder {
 
     static final int MSG_LOGIN = 0x41;
     static final int MSG_LOCATION = 0x02;
@@ -51,7 +51,7 @@ public class AutoFon45FrameDecoder extends FrameDecoder {
 
         // Check length and return buffer
         if (length != 0 && buf.readableBytes() >= length) {
-            return buf.readBytes(length);
+            return readFrame(buf, length);
         }
 
         return null;
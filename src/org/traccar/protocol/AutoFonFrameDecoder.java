@@ -18,9 +18,9 @@ package org.traccar.protocol;
 import org.jboss.netty.buffer.ChannelBuffer;
 import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.ChannelHandlerContext;
-import org.jboss.netty.handler.codec.frame.FrameDecoder;
+import org.traccar.BaseFrameDecoder;
 
-public class AutoFonFrameDecoder extends FrameDecoder {
+public class AutoFonFrameDecoder extends BaseFrameDecoder {
 
     public static final int MSG_LOGIN = 0x10;
     public static final int MSG_LOCATION = 0x11;
@@ -55,7 +55,7 @@ public class AutoFonFrameDecoder extends FrameDecoder {
 
         // Check length and return buffer
         if (length != 0 && buf.readableBytes() >= length) {
-            return buf.readBytes(length);
+            return readFrame(buf, length);
         }
 
         return null;
@@ -49,7 +49,7 @@ public class Avl301ProtocolDecoder extends BaseProtocolDecoder {
 
     private static void sendResponse(Channel channel, int type) {
         if (channel != null) {
-            ChannelBuffer response = ChannelBuffers.directBuffer(5);
+            ChannelBuffer response = ChannelBuffers.buffer(5);
             response.writeByte('$');
             response.writeByte(type);
             response.writeByte('#');
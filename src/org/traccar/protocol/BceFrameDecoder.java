@@ -18,9 +18,9 @@ package org.traccar.protocol;
 import org.jboss.netty.buffer.ChannelBuffer;
 import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.ChannelHandlerContext;
-import org.jboss.netty.handler.codec.frame.FrameDecoder;
+import org.traccar.BaseFrameDecoder;
 
-public class BceFrameDecoder extends FrameDecoder {
+public class BceFrameDecoder extends BaseFrameDecoder {
 
     private static final int HANDSHAKE_LENGTH = 7; // "#BCE#\r\n"
 
@@ -51,7 +51,7 @@ public class BceFrameDecoder extends FrameDecoder {
             end += buf.getUnsignedShort(buf.readerIndex() + end) + 2;
 
             if (buf.readableBytes() > end && checksum(buf, end) == buf.getByte(buf.readerIndex() + end)) {
-                return buf.readBytes(end + 1);
+                return readFrame(buf, end + 1);
             }
         }
 
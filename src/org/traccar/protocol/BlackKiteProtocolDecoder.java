@@ -56,7 +56,7 @@ public class BlackKiteProtocolDecoder extends BaseProtocolDecoder {
     private static final int TAG_XT3 = 0x62;
 
     private void sendReply(Channel channel, int checksum) {
-        ChannelBuffer reply = ChannelBuffers.directBuffer(ByteOrder.LITTLE_ENDIAN, 3);
+        ChannelBuffer reply = ChannelBuffers.buffer(ByteOrder.LITTLE_ENDIAN, 3);
         reply.writeByte(0x02);
         reply.writeShort((short) checksum);
         if (channel != null) {
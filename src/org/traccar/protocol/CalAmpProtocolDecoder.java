@@ -50,7 +50,7 @@ public class CalAmpProtocolDecoder extends BaseProtocolDecoder {
 
     private void sendResponse(Channel channel, SocketAddress remoteAddress, int type, int index, int result) {
         if (channel != null) {
-            ChannelBuffer response = ChannelBuffers.directBuffer(10);
+            ChannelBuffer response = ChannelBuffers.buffer(10);
             response.writeByte(SERVICE_RESPONSE);
             response.writeByte(MSG_ACK);
             response.writeShort(index);
@@ -95,7 +95,7 @@ public class CastelProtocolDecoder extends BaseProtocolDecoder {
         if (type == MSG_HEARTBEAT) {
 
             if (channel != null) {
-                ChannelBuffer response = ChannelBuffers.directBuffer(ByteOrder.LITTLE_ENDIAN, 31);
+                ChannelBuffer response = ChannelBuffers.buffer(ByteOrder.LITTLE_ENDIAN, 31);
                 response.writeByte(0x40); response.writeByte(0x40);
                 response.writeShort(response.capacity());
                 response.writeByte(version);
@@ -116,7 +116,7 @@ public class CastelProtocolDecoder extends BaseProtocolDecoder {
 
             } else if (type == MSG_LOGIN && channel != null) {
 
-                ChannelBuffer response = ChannelBuffers.directBuffer(ByteOrder.LITTLE_ENDIAN, 41);
+                ChannelBuffer response = ChannelBuffers.buffer(ByteOrder.LITTLE_ENDIAN, 41);
                 response.writeByte(0x40); response.writeByte(0x40);
                 response.writeShort(response.capacity());
                 response.writeByte(version);
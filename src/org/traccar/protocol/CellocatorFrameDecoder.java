@@ -18,10 +18,10 @@ package org.traccar.protocol;
 import org.jboss.netty.buffer.ChannelBuffer;
 import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.ChannelHandlerContext;
-import org.jboss.netty.handler.codec.frame.FrameDecoder;
+import org.traccar.BaseFrameDecoder;
 import org.traccar.helper.Log;
 
-public class CellocatorFrameDecoder extends FrameDecoder {
+public class CellocatorFrameDecoder extends BaseFrameDecoder {
 
     private static final int MESSAGE_MINIMUM_LENGTH = 15;
 
@@ -65,7 +65,7 @@ public class CellocatorFrameDecoder extends FrameDecoder {
 
         // Read packet
         if (length > 0 && available >= length) {
-            return buf.readBytes(length);
+            return readFrame(buf, length);
         }
 
         return null;
@@ -44,7 +44,7 @@ public class CellocatorProtocolDecoder extends BaseProtocolDecoder {
     private byte commandCount;
 
     private void sendReply(Channel channel, long deviceId, byte packetNumber) {
-        ChannelBuffer reply = ChannelBuffers.directBuffer(ByteOrder.LITTLE_ENDIAN, 28);
+        ChannelBuffer reply = ChannelBuffers.buffer(ByteOrder.LITTLE_ENDIAN, 28);
         reply.writeByte('M');
         reply.writeByte('C');
         reply.writeByte('G');
@@ -18,9 +18,9 @@ package org.traccar.protocol;
 import org.jboss.netty.buffer.ChannelBuffer;
 import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.ChannelHandlerContext;
-import org.jboss.netty.handler.codec.frame.FrameDecoder;
+import org.traccar.BaseFrameDecoder;
 
-public class GalileoFrameDecoder extends FrameDecoder {
+public class GalileoFrameDecoder extends BaseFrameDecoder {
 
     private static final int MESSAGE_MINIMUM_LENGTH = 5;
 
@@ -38,7 +38,7 @@ public class GalileoFrameDecoder extends FrameDecoder {
         // Read packet
         int length = buf.getUnsignedShort(buf.readerIndex() + 1) & 0x7fff;
         if (buf.readableBytes() >= (length + MESSAGE_MINIMUM_LENGTH)) {
-            return buf.readBytes(length + MESSAGE_MINIMUM_LENGTH);
+            return readFrame(buf, length + MESSAGE_MINIMUM_LENGTH);
         }
 
         return null;
@@ -102,7 +102,7 @@ public class GalileoProtocolDecoder extends BaseProtocolDecoder {
     }
 
     private void sendReply(Channel channel, int checksum) {
-        ChannelBuffer reply = ChannelBuffers.directBuffer(ByteOrder.LITTLE_ENDIAN, 3);
+        ChannelBuffer reply = ChannelBuffers.buffer(ByteOrder.LITTLE_ENDIAN, 3);
         reply.writeByte(0x02);
         reply.writeShort((short) checksum);
         if (channel != null) {
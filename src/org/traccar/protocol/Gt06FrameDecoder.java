@@ -18,9 +18,9 @@ package org.traccar.protocol;
 import org.jboss.netty.buffer.ChannelBuffer;
 import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.ChannelHandlerContext;
-import org.jboss.netty.handler.codec.frame.FrameDecoder;
+import org.traccar.BaseFrameDecoder;
 
-public class Gt06FrameDecoder extends FrameDecoder {
+public class Gt06FrameDecoder extends BaseFrameDecoder {
 
     @Override
     protected Object decode(
@@ -33,20 +33,12 @@ public class Gt06FrameDecoder extends FrameDecoder {
             return null;
         }
 
-        int length = 2 + 2; // head and tail
-
+        // Length field excludes head, field itself and tail
         if (buf.getByte(buf.readerIndex()) == 0x78) {
-            length += 1 + buf.getUnsignedByte(buf.readerIndex() + 2);
+            return readFrame(buf, 2, 1, 2);
         } else {
-            length += 2 + buf.getUnsignedShort(buf.readerIndex() + 2);
-        }
-
-        // Check length and return buffer
-        if (buf.readableBytes() >= length) {
-            return buf.readBytes(length);
+            return readFrame(buf, 2, 2, 2);
         }
-
-        return null;
     }
 
 }
@@ -84,16 +84,25 @@ public class Gt06ProtocolDecoder extends BaseProtocolDecoder {
                 || type == MSG_GPS_LBS_STATUS_1 || type == MSG_GPS_LBS_STATUS_2 || type == MSG_GPS_LBS_STATUS_3;
     }
 
+    @Override
+    protected boolean isDurableAckSupported() {
+        return true;
+    }
+
+    private static ChannelBuffer createResponse(int type, int index) {
+        ChannelBuffer response = ChannelBuffers.buffer(10);
+        response.writeByte(0x78); response.writeByte(0x78); // header
+        response.writeByte(0x05); // size
+        response.writeByte(type);
+        response.writeShort(index);
+        response.writeShort(Checksum.crc16(Checksum.CRC16_X25, response.toByteBuffer(2, 4)));
+        response.writeByte(0x0D); response.writeByte(0x0A); // ending
+        return response;
+    }
+
     private static void sendResponse(Channel channel, int type, int index) {
         if (channel != null) {
-            ChannelBuffer response = ChannelBuffers.directBuffer(10);
-            response.writeByte(0x78); response.writeByte(0x78); // header
-            response.writeByte(0x05); // size
-            response.writeByte(type);
-            response.writeShort(index);
-            response.writeShort(Checksum.crc16(Checksum.CRC16_X25, response.toByteBuffer(2, 4)));
-            response.writeByte(0x0D); response.writeByte(0x0A); // ending
-            channel.write(response);
+            channel.write(createResponse(type, index));
         }
     }
 
@@ -233,9 +242,8 @@ public class Gt06ProtocolDecoder extends BaseProtocolDecoder {
                 }
                 int index = buf.readUnsignedShort();
                 position.set(Event.KEY_INDEX, index);
-                sendResponse(channel, type, index);
 
-                return position;
+                return acknowledge(channel, remoteAddress, createResponse(type, index), position);
 
             } else {
 
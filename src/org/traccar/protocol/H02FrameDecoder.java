@@ -19,10 +19,10 @@ import java.nio.charset.Charset;
 import org.jboss.netty.buffer.ChannelBuffer;
 import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.ChannelHandlerContext;
-import org.jboss.netty.handler.codec.frame.FrameDecoder;
+import org.traccar.BaseFrameDecoder;
 import org.traccar.helper.ChannelBufferTools;
 
-public class H02FrameDecoder extends FrameDecoder {
+public class H02FrameDecoder extends BaseFrameDecoder {
 
     private static final int MESSAGE_LENGTH = 32;
 
@@ -46,13 +46,13 @@ public class H02FrameDecoder extends FrameDecoder {
             // Return text message
             Integer index = ChannelBufferTools.find(buf, buf.readerIndex(), buf.readableBytes(), "#");
             if (index != null) {
-                return buf.readBytes(index + 1 - buf.readerIndex());
+                return readFrame(buf, index + 1 - buf.readerIndex());
             }
 
         } else if (marker.equals("$") && buf.readableBytes() >= MESSAGE_LENGTH) {
 
             // Return binary message
-            return buf.readBytes(MESSAGE_LENGTH);
+            return readFrame(buf, MESSAGE_LENGTH);
 
         }
 
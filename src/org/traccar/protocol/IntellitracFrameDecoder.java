@@ -28,6 +28,11 @@ public class IntellitracFrameDecoder extends LineBasedFrameDecoder {
         super(maxFrameLength);
     }
 
+    @Override
+    protected ChannelBuffer extractFrame(ChannelBuffer buffer, int index, int length) {
+        return buffer.slice(index, length);
+    }
+
     // example of sync header: 0xFA 0xF8 0x1B 0x01 0x81 0x60 0x33 0x3C
 
     @Override
@@ -40,7 +45,7 @@ public class IntellitracFrameDecoder extends LineBasedFrameDecoder {
 
         // Check for sync packet
         if (buf.getUnsignedShort(buf.readerIndex()) == 0xFAF8) {
-            ChannelBuffer syncMessage = buf.readBytes(8);
+            ChannelBuffer syncMessage = buf.readSlice(8);
             if (channel != null) {
                 channel.write(syncMessage);
             }
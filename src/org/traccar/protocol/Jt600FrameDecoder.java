@@ -19,10 +19,10 @@ import java.text.ParseException;
 import org.jboss.netty.buffer.ChannelBuffer;
 import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.ChannelHandlerContext;
-import org.jboss.netty.handler.codec.frame.FrameDecoder;
+import org.traccar.BaseFrameDecoder;
 import org.traccar.helper.ChannelBufferTools;
 
-public class Jt600FrameDecoder extends FrameDecoder {
+public class Jt600FrameDecoder extends BaseFrameDecoder {
 
     @Override
     protected Object decode(
@@ -43,13 +43,13 @@ public class Jt600FrameDecoder extends FrameDecoder {
             // Check length
             int length = buf.getUnsignedShort(buf.readerIndex() + 7) + 10;
             if (length >= available) {
-                return buf.readBytes(length);
+                return readFrame(buf, length);
             }
         } else if (first == '(') {
             // Find ending
             Integer endIndex = ChannelBufferTools.find(buf, buf.readerIndex(), available, ")");
             if (endIndex != null) {
-                return buf.readBytes(endIndex + 1);
+                return readFrame(buf, endIndex + 1);
             }
         } else {
             // Unknown message
@@ -18,9 +18,9 @@ package org.traccar.protocol;
 import org.jboss.netty.buffer.ChannelBuffer;
 import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.ChannelHandlerContext;
-import org.jboss.netty.handler.codec.frame.FrameDecoder;
+import org.traccar.BaseFrameDecoder;
 
-public class MeiligaoFrameDecoder extends FrameDecoder {
+public class MeiligaoFrameDecoder extends BaseFrameDecoder {
 
     private static final int MESSAGE_HEADER = 4;
 
@@ -35,15 +35,8 @@ public class MeiligaoFrameDecoder extends FrameDecoder {
             buf.readByte();
         }
 
-        // Check length and return buffer
-        if (buf.readableBytes() >= MESSAGE_HEADER) {
-            int length = buf.getUnsignedShort(buf.readerIndex() + 2);
-            if (buf.readableBytes() >= length) {
-                return buf.readBytes(length);
-            }
-        }
-
-        return null;
+        // Length field covers the whole message
+        return readFrame(buf, 2, 2, -MESSAGE_HEADER);
     }
 
 }
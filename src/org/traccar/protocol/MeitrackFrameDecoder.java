@@ -19,10 +19,10 @@ import java.nio.charset.Charset;
 import org.jboss.netty.buffer.ChannelBuffer;
 import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.ChannelHandlerContext;
-import org.jboss.netty.handler.codec.frame.FrameDecoder;
+import org.traccar.BaseFrameDecoder;
 import org.traccar.helper.ChannelBufferTools;
 
-public class MeitrackFrameDecoder extends FrameDecoder {
+public class MeitrackFrameDecoder extends BaseFrameDecoder {
 
     @Override
     protected Object decode(
@@ -39,7 +39,7 @@ public class MeitrackFrameDecoder extends FrameDecoder {
             int length = index - buf.readerIndex() + Integer.parseInt(
                     buf.toString(buf.readerIndex() + 3, index - buf.readerIndex() - 3, Charset.defaultCharset()));
             if (buf.readableBytes() >= length) {
-                return buf.readBytes(length);
+                return readFrame(buf, length);
             }
         }
 
@@ -58,7 +58,7 @@ public class Mta6ProtocolDecoder extends BaseProtocolDecoder {
                 HttpVersion.HTTP_1_1, HttpResponseStatus.OK);
 
         ChannelBuffer begin = ChannelBuffers.copiedBuffer("#ACK#", Charset.defaultCharset());
-        ChannelBuffer end = ChannelBuffers.directBuffer(3);
+        ChannelBuffer end = ChannelBuffers.buffer(3);
         end.writeByte(packetId);
         end.writeByte(packetCount);
         end.writeByte(0);
@@ -18,9 +18,9 @@ package org.traccar.protocol;
 import org.jboss.netty.buffer.ChannelBuffer;
 import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.ChannelHandlerContext;
-import org.jboss.netty.handler.codec.frame.FrameDecoder;
+import org.traccar.BaseFrameDecoder;
 
-public class NavigilFrameDecoder extends FrameDecoder {
+public class NavigilFrameDecoder extends BaseFrameDecoder {
 
     private static final int MESSAGE_HEADER = 20;
     private static final long PREAMBLE = 0x2477F5F6;
@@ -49,7 +49,7 @@ public class NavigilFrameDecoder extends FrameDecoder {
                 buf.readUnsignedInt();
                 length -= 4;
             }
-            return buf.readBytes(length);
+            return readFrame(buf, length);
         }
 
         return null;
@@ -59,11 +59,11 @@ public class NavigilProtocolDecoder extends BaseProtocolDecoder {
     private int senderSequenceNumber = 1;
 
     private void sendAcknowledgment(Channel channel, int sequenceNumber) {
-        ChannelBuffer data = ChannelBuffers.directBuffer(ByteOrder.LITTLE_ENDIAN, 4);
+        ChannelBuffer data = ChannelBuffers.buffer(ByteOrder.LITTLE_ENDIAN, 4);
         data.writeShort(sequenceNumber);
         data.writeShort(0); // OK
 
-        ChannelBuffer header = ChannelBuffers.directBuffer(ByteOrder.LITTLE_ENDIAN, 20);
+        ChannelBuffer header = ChannelBuffers.buffer(ByteOrder.LITTLE_ENDIAN, 20);
         header.writeByte(1); header.writeByte(0);
         header.writeShort(senderSequenceNumber++);
         header.writeShort(MSG_ACKNOWLEDGEMENT);
@@ -266,7 +266,7 @@ public class NavisProtocolDecoder extends BaseProtocolDecoder {
     }
 
     private void sendReply(Channel channel, ChannelBuffer data) {
-        ChannelBuffer header = ChannelBuffers.directBuffer(ByteOrder.LITTLE_ENDIAN, 16);
+        ChannelBuffer header = ChannelBuffers.buffer(ByteOrder.LITTLE_ENDIAN, 16);
         header.writeBytes(ChannelBuffers.copiedBuffer(ByteOrder.LITTLE_ENDIAN, prefix, CHARSET));
         header.writeInt((int) deviceUniqueId);
         header.writeInt((int) serverId);
@@ -18,9 +18,9 @@ package org.traccar.protocol;
 import org.jboss.netty.buffer.ChannelBuffer;
 import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.ChannelHandlerContext;
-import org.jboss.netty.handler.codec.frame.FrameDecoder;
+import org.traccar.BaseFrameDecoder;
 
-public class OrionFrameDecoder extends FrameDecoder {
+public class OrionFrameDecoder extends BaseFrameDecoder {
 
     @Override
     protected Object decode(
@@ -51,14 +51,14 @@ public class OrionFrameDecoder extends FrameDecoder {
                 }
 
                 if (buf.readableBytes() >= length) {
-                    return buf.readBytes(length);
+                    return readFrame(buf, length);
                 }
 
             } else if (type == OrionProtocolDecoder.MSG_SYSLOG && buf.readableBytes() >= length + 12) {
 
                 length += buf.getUnsignedShort(buf.readerIndex() + 8);
                 if (buf.readableBytes() >= length) {
-                    return buf.readBytes(length);
+                    return readFrame(buf, length);
                 }
 
             }
@@ -40,7 +40,7 @@ public class OrionProtocolDecoder extends BaseProtocolDecoder {
 
     private static void sendResponse(Channel channel, ChannelBuffer buf) {
         if (channel != null) {
-            ChannelBuffer response = ChannelBuffers.directBuffer(4);
+            ChannelBuffer response = ChannelBuffers.buffer(4);
             response.writeByte('*');
             response.writeShort(buf.getUnsignedShort(buf.writerIndex() - 2));
             response.writeByte(buf.getUnsignedByte(buf.writerIndex() - 3));
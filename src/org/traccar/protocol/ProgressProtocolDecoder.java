@@ -54,7 +54,7 @@ public class ProgressProtocolDecoder extends BaseProtocolDecoder {
         if (lastIndex == 0) {
             lastIndex = newIndex;
         } else if (newIndex > lastIndex) {
-            ChannelBuffer request = ChannelBuffers.directBuffer(ByteOrder.LITTLE_ENDIAN, 12);
+            ChannelBuffer request = ChannelBuffers.buffer(ByteOrder.LITTLE_ENDIAN, 12);
             request.writeShort(MSG_LOG_SYNC);
             request.writeShort(4);
             request.writeInt((int) lastIndex);
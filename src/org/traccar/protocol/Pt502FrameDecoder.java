@@ -18,10 +18,10 @@ package org.traccar.protocol;
 import org.jboss.netty.buffer.ChannelBuffer;
 import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.ChannelHandlerContext;
-import org.jboss.netty.handler.codec.frame.FrameDecoder;
+import org.traccar.BaseFrameDecoder;
 import org.traccar.helper.ChannelBufferTools;
 
-public class Pt502FrameDecoder extends FrameDecoder {
+public class Pt502FrameDecoder extends BaseFrameDecoder {
 
     private static final int BINARY_HEADER = 5;
 
@@ -40,7 +40,7 @@ public class Pt502FrameDecoder extends FrameDecoder {
             int length = buf.getShort(buf.readerIndex() + 3);
             if (buf.readableBytes() >= length) {
                 buf.skipBytes(BINARY_HEADER);
-                ChannelBuffer result = buf.readBytes(length - BINARY_HEADER - 2);
+                ChannelBuffer result = readFrame(buf, length - BINARY_HEADER - 2);
                 buf.skipBytes(2);
                 return result;
             }
@@ -49,7 +49,7 @@ public class Pt502FrameDecoder extends FrameDecoder {
 
             Integer index = ChannelBufferTools.find(buf, 0, buf.readableBytes(), "\n");
             if (index != null) {
-                ChannelBuffer result = buf.readBytes(index - 1);
+                ChannelBuffer result = readFrame(buf, index - 1);
                 buf.skipBytes(2);
                 return result;
             }
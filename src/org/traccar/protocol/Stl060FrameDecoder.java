@@ -27,6 +27,11 @@ public class Stl060FrameDecoder extends CharacterDelimiterFrameDecoder {
         super(maxFrameLength, '#');
     }
 
+    @Override
+    protected ChannelBuffer extractFrame(ChannelBuffer buffer, int index, int length) {
+        return buffer.slice(index, length);
+    }
+
     @Override
     protected Object decode(
             ChannelHandlerContext ctx,
@@ -39,12 +44,10 @@ public class Stl060FrameDecoder extends CharacterDelimiterFrameDecoder {
 
             Integer beginIndex = ChannelBufferTools.find(
                     result, 0, result.readableBytes(), "$");
-            if (beginIndex == null) {
-                return result;
-            } else {
+            if (beginIndex != null) {
                 result.skipBytes(beginIndex);
-                return result.readBytes(result.readableBytes());
             }
+            return result;
 
         }
 
@@ -42,7 +42,7 @@ public class TeltonikaProtocolDecoder extends BaseProtocolDecoder {
         boolean result =  identify(imei, channel);
 
         if (channel != null) {
-            ChannelBuffer response = ChannelBuffers.directBuffer(1);
+            ChannelBuffer response = ChannelBuffers.buffer(1);
             if (result) {
                 response.writeByte(1);
             } else {
@@ -56,7 +56,12 @@ public class TeltonikaProtocolDecoder extends BaseProtocolDecoder {
     private static final int CODEC_FM4X00 = 0x08;
     private static final int CODEC_12 = 0x0C;
 
-    private List<Position> parseLocation(Channel channel, ChannelBuffer buf) {
+    @Override
+    protected boolean isDurableAckSupported() {
+        return true;
+    }
+
+    private Object parseLocation(Channel channel, SocketAddress remoteAddress, ChannelBuffer buf) {
         List<Position> positions = new LinkedList<>();
 
         buf.skipBytes(4); // marker
@@ -189,13 +194,9 @@ public class TeltonikaProtocolDecoder extends BaseProtocolDecoder {
             positions.add(position);
         }
 
-        if (channel != null) {
-            ChannelBuffer response = ChannelBuffers.directBuffer(4);
-            response.writeInt(count);
-            channel.write(response);
-        }
-
-        return positions;
+        ChannelBuffer response = ChannelBuffers.buffer(4);
+        response.writeInt(count);
+        return acknowledge(channel, remoteAddress, response, positions);
     }
 
     @Override
@@ -208,7 +209,7 @@ public class TeltonikaProtocolDecoder extends BaseProtocolDecoder {
         if (buf.getUnsignedShort(0) > 0) {
             parseIdentification(channel, buf);
         } else {
-            return parseLocation(channel, buf);
+            return parseLocation(channel, remoteAddress, buf);
         }
 
         return null;
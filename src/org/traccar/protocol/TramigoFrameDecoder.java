@@ -28,6 +28,11 @@ public class TramigoFrameDecoder extends LengthFieldBasedFrameDecoder {
         super(1024, 6, 2, -8, 0);
     }
 
+    @Override
+    protected ChannelBuffer extractFrame(ChannelBuffer buffer, int index, int length) {
+        return buffer.slice(index, length);
+    }
+
     @Override
     protected Object decode(
             ChannelHandlerContext ctx,
@@ -19,9 +19,9 @@ import org.jboss.netty.buffer.ChannelBuffer;
 import org.jboss.netty.buffer.ChannelBuffers;
 import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.ChannelHandlerContext;
-import org.jboss.netty.handler.codec.frame.FrameDecoder;
+import org.traccar.BaseFrameDecoder;
 
-public class UlbotechFrameDecoder extends FrameDecoder {
+public class UlbotechFrameDecoder extends BaseFrameDecoder {
 
     @Override
     protected Object decode(
@@ -18,10 +18,10 @@ package org.traccar.protocol;
 import org.jboss.netty.buffer.ChannelBuffer;
 import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.ChannelHandlerContext;
-import org.jboss.netty.handler.codec.frame.FrameDecoder;
+import org.traccar.BaseFrameDecoder;
 import org.traccar.helper.ChannelBufferTools;
 
-public class WondexFrameDecoder extends FrameDecoder {
+public class WondexFrameDecoder extends BaseFrameDecoder {
 
     private static final int KEEP_ALIVE_LENGTH = 8;
 
@@ -38,7 +38,7 @@ public class WondexFrameDecoder extends FrameDecoder {
         if (buf.getUnsignedByte(buf.readerIndex()) == 0xD0) {
 
             // Send response
-            ChannelBuffer frame = buf.readBytes(KEEP_ALIVE_LENGTH);
+            ChannelBuffer frame = readFrame(buf, KEEP_ALIVE_LENGTH);
             if (channel != null) {
                 channel.write(frame);
             }
@@ -47,7 +47,7 @@ public class WondexFrameDecoder extends FrameDecoder {
 
             Integer index = ChannelBufferTools.find(buf, buf.readerIndex(), buf.writerIndex(), "\r\n");
             if (index != null) {
-                ChannelBuffer frame = buf.readBytes(index - buf.readerIndex());
+                ChannelBuffer frame = readFrame(buf, index - buf.readerIndex());
                 buf.skipBytes(2);
                 return frame;
             }
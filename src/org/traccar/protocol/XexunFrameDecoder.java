@@ -18,10 +18,10 @@ package org.traccar.protocol;
 import org.jboss.netty.buffer.ChannelBuffer;
 import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.ChannelHandlerContext;
-import org.jboss.netty.handler.codec.frame.FrameDecoder;
+import org.traccar.BaseFrameDecoder;
 import org.traccar.helper.ChannelBufferTools;
 
-public class XexunFrameDecoder extends FrameDecoder {
+public class XexunFrameDecoder extends BaseFrameDecoder {
 
     @Override
     protected Object decode(
@@ -58,7 +58,7 @@ public class XexunFrameDecoder extends FrameDecoder {
 
         // Read buffer
         buf.skipBytes(beginIndex);
-        ChannelBuffer frame = buf.readBytes(endIndex - beginIndex + 1);
+        ChannelBuffer frame = readFrame(buf, endIndex - beginIndex + 1);
 
         return frame;
     }
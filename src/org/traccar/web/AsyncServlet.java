@@ -16,18 +16,23 @@
 package org.traccar.web;
 
 import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
-import javax.json.Json;
-import javax.json.JsonObjectBuilder;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.json.stream.JsonGenerator;
 import javax.servlet.AsyncContext;
-import javax.servlet.ServletResponse;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import org.jboss.netty.util.Timeout;
@@ -48,6 +53,74 @@ public class AsyncServlet extends BaseServlet {
         return true;
     }
 
+    /**
+     * Responses are written outside of network threads, so slow clients don't delay position processing
+     */
+    static final ExecutorService DISPATCH_EXECUTOR = Executors.newFixedThreadPool(
+            Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
+                private final AtomicInteger index = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "async-dispatch-" + index.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+    /**
+     * Position encoded to JSON, shared between all sessions and sockets receiving it
+     */
+    private static final class PositionFragment {
+
+        private final Position position;
+        private final long id;
+        private final String json;
+
+        private PositionFragment(Position position, String json) {
+            this.position = position;
+            this.id = position.getId();
+            this.json = json;
+        }
+
+    }
+
+    private static final ConcurrentMap<Long, PositionFragment> POSITION_FRAGMENTS = new ConcurrentHashMap<>();
+
+    /**
+     * Latest positions are not modified after processing, so encoding is cached until next position of the device.
+     * Position writer assigns id after the position is published, so the fragment is also refreshed when id changes.
+     */
+    static String getPositionJson(Position position) {
+        PositionFragment fragment = POSITION_FRAGMENTS.get(position.getDeviceId());
+        if (fragment == null || fragment.position != position || fragment.id != position.getId()) {
+            StringWriter writer = new StringWriter();
+            try (JsonGenerator generator = JsonConverter.createGenerator(writer)) {
+                JsonConverter.writeObject(generator, position);
+            }
+            fragment = new PositionFragment(position, writer.toString());
+            POSITION_FRAGMENTS.put(position.getDeviceId(), fragment);
+        }
+        return fragment.json;
+    }
+
+    /**
+     * Write array of positions as a field of JSON object using cached fragments
+     */
+    static void writePositions(Writer writer, String prefix, Collection<Position> positions) throws IOException {
+        writer.write(prefix);
+        writer.write("[");
+        boolean first = true;
+        for (Position position : positions) {
+            if (!first) {
+                writer.write(",");
+            }
+            writer.write(getPositionJson(position));
+            first = false;
+        }
+        writer.write("]}");
+    }
+
     public static class AsyncSession {
 
         private static final boolean DEBUG_ASYNC = false;
@@ -61,8 +134,9 @@ public class AsyncServlet extends BaseServlet {
         private final Set<Long> devices = new HashSet<>();
         private Timeout sessionTimeout;
         private Timeout requestTimeout;
-        private final Map<Long, Position> positions = new HashMap<>();
+        private Map<Long, Position> positions = new HashMap<>();
         private AsyncContext activeContext;
+        private boolean dispatchScheduled;
 
         private void logEvent(String message) {
             if (DEBUG_ASYNC) {
@@ -94,19 +168,24 @@ public class AsyncServlet extends BaseServlet {
                 synchronized (AsyncSession.this) {
                     logEvent("onUpdate deviceId: " + position.getDeviceId());
                     if (!destroyed) {
-                        if (requestTimeout != null) {
-                            requestTimeout.cancel();
-                            requestTimeout = null;
-                        }
+                        // Only the latest position of each device is sent with the next response
                         positions.put(position.getDeviceId(), position);
-                        if (activeContext != null) {
-                            response();
+                        if (activeContext != null && !dispatchScheduled) {
+                            dispatchScheduled = true;
+                            DISPATCH_EXECUTOR.execute(dispatchTask);
                         }
                     }
                 }
             }
         };
 
+        private final Runnable dispatchTask = new Runnable() {
+            @Override
+            public void run() {
+                response();
+            }
+        };
+
         private final TimerTask sessionTimer = new TimerTask() {
             @Override
             public void run(Timeout tmt) throws Exception {
@@ -115,90 +194,156 @@ public class AsyncServlet extends BaseServlet {
                     destroyed = true;
                 }
                 Context.getConnectionManager().removeListener(devices, dataListener);
-                synchronized (ASYNC_SESSIONS) {
-                    ASYNC_SESSIONS.remove(sessionId);
-                }
+                removeSession(AsyncSession.this);
             }
         };
 
         private final TimerTask requestTimer = new TimerTask() {
             @Override
             public void run(Timeout tmt) throws Exception {
-                synchronized (AsyncSession.this) {
-                    logEvent("requestTimeout");
-                    if (!destroyed && activeContext != null) {
-                        response();
-                    }
-                }
+                logEvent("requestTimeout");
+                response();
             }
         };
 
-        public synchronized void request(AsyncContext context) {
-            logEvent("request context: " + context.hashCode());
-            if (!destroyed) {
+        public void request(AsyncContext context) {
+            synchronized (this) {
+                logEvent("request context: " + context.hashCode());
+                if (destroyed) {
+                    return;
+                }
                 activeContext = context;
                 if (sessionTimeout != null) {
                     sessionTimeout.cancel();
                     sessionTimeout = null;
                 }
-
-                if (!positions.isEmpty()) {
-                    response();
-                } else {
+                if (positions.isEmpty()) {
                     requestTimeout = GlobalTimer.getTimer().newTimeout(
                             requestTimer, REQUEST_TIMEOUT, TimeUnit.SECONDS);
+                    return;
                 }
             }
+            response();
         }
 
-        private synchronized void response() {
-            logEvent("response context: " + activeContext.hashCode());
-            if (!destroyed) {
-                ServletResponse response = activeContext.getResponse();
-
-                JsonObjectBuilder result = Json.createObjectBuilder();
-                result.add("success", true);
-                result.add("data", JsonConverter.arrayToJson(positions.values()));
-                positions.clear();
-
-                try {
-                    response.getWriter().println(result.build().toString());
-                } catch (IOException error) {
-                    Log.warning(error);
+        /**
+         * Take pending positions under the lock and write them without it, so updates are not blocked by output
+         */
+        private void response() {
+            AsyncContext context;
+            Map<Long, Position> result;
+
+            synchronized (this) {
+                dispatchScheduled = false;
+                if (destroyed || activeContext == null) {
+                    return;
                 }
-
-                activeContext.complete();
+                logEvent("response context: " + activeContext.hashCode());
+                if (requestTimeout != null) {
+                    requestTimeout.cancel();
+                    requestTimeout = null;
+                }
+                context = activeContext;
                 activeContext = null;
+                result = positions;
+                positions = new HashMap<>();
 
                 sessionTimeout = GlobalTimer.getTimer().newTimeout(
                         sessionTimer, SESSION_TIMEOUT, TimeUnit.SECONDS);
             }
+
+            try {
+                writePositions(context.getResponse().getWriter(), "{\"success\":true,\"data\":", result.values());
+            } catch (IOException error) {
+                Log.warning(error);
+            } finally {
+                context.complete();
+            }
         }
 
     }
 
-    private static final Map<String, AsyncSession> ASYNC_SESSIONS = new HashMap<>();
+    private static final ConcurrentMap<String, AsyncSession> ASYNC_SESSIONS = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<Long, Set<AsyncSession>> USER_SESSIONS = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<Long, Set<AsyncSession>> DEVICE_SESSIONS = new ConcurrentHashMap<>();
+
+    private static void addToIndex(ConcurrentMap<Long, Set<AsyncSession>> index, long key, AsyncSession session) {
+        Set<AsyncSession> sessions = index.get(key);
+        if (sessions == null) {
+            sessions = Collections.newSetFromMap(new ConcurrentHashMap<AsyncSession, Boolean>());
+            Set<AsyncSession> existingSessions = index.putIfAbsent(key, sessions);
+            if (existingSessions != null) {
+                sessions = existingSessions;
+            }
+        }
+        sessions.add(session);
+    }
 
-    public static void sessionRefreshUser(long userId) {
-        synchronized (ASYNC_SESSIONS) {
-            Iterator<Entry<String, AsyncSession>> iterator = ASYNC_SESSIONS.entrySet().iterator();
-            while (iterator.hasNext()) {
-                if (iterator.next().getValue().userId == userId) {
-                    iterator.remove();
-                }
+    private static void removeFromIndex(ConcurrentMap<Long, Set<AsyncSession>> index, long key, AsyncSession session) {
+        Set<AsyncSession> sessions = index.get(key);
+        if (sessions != null) {
+            sessions.remove(session);
+        }
+    }
+
+    private static void addSession(AsyncSession session) {
+        addToIndex(USER_SESSIONS, session.userId, session);
+        for (long deviceId : session.devices) {
+            addToIndex(DEVICE_SESSIONS, deviceId, session);
+        }
+    }
+
+    /**
+     * Remove session from the registry, next request creates a new one. Session itself stays subscribed until
+     * its timeout, so a request in progress still gets a response.
+     */
+    private static void removeSession(AsyncSession session) {
+        ASYNC_SESSIONS.remove(session.sessionId, session);
+        removeFromIndex(USER_SESSIONS, session.userId, session);
+        for (long deviceId : session.devices) {
+            removeFromIndex(DEVICE_SESSIONS, deviceId, session);
+        }
+    }
+
+    private static void removeSessions(Set<AsyncSession> sessions) {
+        if (sessions != null) {
+            for (AsyncSession session : sessions) {
+                removeSession(session);
             }
         }
     }
 
+    public static void sessionRefreshUser(long userId) {
+        removeSessions(USER_SESSIONS.get(userId));
+        AsyncSocket.refreshUser(userId);
+    }
+
     public static void sessionRefreshDevice(long deviceId) {
-        synchronized (ASYNC_SESSIONS) {
-            Iterator<Entry<String, AsyncSession>> iterator = ASYNC_SESSIONS.entrySet().iterator();
-            while (iterator.hasNext()) {
-                if (iterator.next().getValue().hasDevice(deviceId)) {
-                    iterator.remove();
-                }
+        removeSessions(DEVICE_SESSIONS.get(deviceId));
+    }
+
+    /**
+     * Devices the user is allowed to see, optionally limited to comma separated list of ids
+     */
+    static Collection<Long> getDevices(long userId, String deviceIds) {
+        Collection<Long> devices = Context.getPermissionsManager().allowedDevices(userId);
+        if (deviceIds != null) {
+            String[] deviceIdArray = deviceIds.split(",");
+            Collection<Long> monitoredDevicesIds = new HashSet<>();
+            for (String deviceId: deviceIdArray) {
+                Long id = Long.valueOf(deviceId);
+                if (devices.contains(id))
+                    monitoredDevicesIds.add(id);
             }
+            if (monitoredDevicesIds.size() > 0)
+                devices = monitoredDevicesIds;
         }
+        return devices;
+    }
+
+    private AsyncSession createSession(HttpServletRequest req, String sessionId) {
+        long userId = getUserId(req);
+        return new AsyncSession(sessionId, userId, getDevices(userId, req.getParameter("deviceIds")));
     }
 
     private void async(final AsyncContext context, String sessionId) {
@@ -206,28 +351,17 @@ public class AsyncServlet extends BaseServlet {
         context.setTimeout(ASYNC_TIMEOUT);
         HttpServletRequest req = (HttpServletRequest) context.getRequest();
 
-        synchronized (ASYNC_SESSIONS) {
-
-            if (Boolean.parseBoolean(req.getParameter("first")) || !ASYNC_SESSIONS.containsKey(sessionId)) {
-                long userId = getUserId(req);
-                Collection<Long> devices = Context.getPermissionsManager().allowedDevices(userId);
-                String deviceIds = req.getParameter("deviceIds");
-                if (deviceIds != null) {
-                    String[] deviceIdArray = deviceIds.split(",");
-                    Collection<Long> monitoredDevicesIds = new HashSet<>();
-                    for (String deviceId: deviceIdArray) {
-                        Long id = Long.valueOf(deviceId);
-                        if (devices.contains(id))
-                            monitoredDevicesIds.add(id);
-                    }
-                    if (monitoredDevicesIds.size() > 0)
-                        devices = monitoredDevicesIds;
-                }
-                ASYNC_SESSIONS.put(sessionId, new AsyncSession(sessionId, userId, devices));
+        AsyncSession session = ASYNC_SESSIONS.get(sessionId);
+        if (Boolean.parseBoolean(req.getParameter("first")) || session == null) {
+            session = createSession(req, sessionId);
+            AsyncSession previousSession = ASYNC_SESSIONS.put(sessionId, session);
+            if (previousSession != null) {
+                removeSession(previousSession);
             }
-
-            ASYNC_SESSIONS.get(sessionId).request(context);
+            addSession(session);
         }
+
+        session.request(context);
     }
 
 }
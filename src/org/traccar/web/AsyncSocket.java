@@ -0,0 +1,211 @@
+/*
+ * Copyright 2015 Anton Tananaev (anton.tananaev@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.web;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.StatusCode;
+import org.eclipse.jetty.websocket.api.WebSocketAdapter;
+import org.eclipse.jetty.websocket.api.WriteCallback;
+import org.traccar.Context;
+import org.traccar.database.ConnectionManager;
+import org.traccar.helper.Log;
+import org.traccar.model.Position;
+
+/**
+ * Pushes position updates of permitted devices to a WebSocket client. Only one message is written at a time, updates
+ * arriving until the write completes are coalesced and only the latest position of each device is sent next.
+ */
+public class AsyncSocket extends WebSocketAdapter implements ConnectionManager.DataCacheListener {
+
+    private static final AtomicInteger CONNECTIONS = new AtomicInteger();
+    private static final AtomicLong MESSAGES = new AtomicLong();
+    private static final AtomicLong BYTES_SENT = new AtomicLong();
+    private static final AtomicLong LATENCY_TOTAL = new AtomicLong();
+
+    private static final ConcurrentMap<Long, Set<AsyncSocket>> USER_SOCKETS = new ConcurrentHashMap<>();
+
+    private final long userId;
+    private final Collection<Long> devices;
+
+    private Map<Long, Position> positions = new HashMap<>();
+    private long pendingTime;
+    private boolean busy;
+
+    public AsyncSocket(long userId, Collection<Long> devices) {
+        this.userId = userId;
+        this.devices = devices;
+    }
+
+    public static int getConnectionCount() {
+        return CONNECTIONS.get();
+    }
+
+    public static long getMessageCount() {
+        return MESSAGES.get();
+    }
+
+    /**
+     * Size of sent messages before compression
+     */
+    public static long getBytesSent() {
+        return BYTES_SENT.get();
+    }
+
+    /**
+     * Average time in milliseconds between receiving an update and completing its write
+     */
+    public static double getAverageLatency() {
+        long messages = MESSAGES.get();
+        if (messages > 0) {
+            return (double) TimeUnit.NANOSECONDS.toMicros(LATENCY_TOTAL.get()) / messages / 1000;
+        }
+        return 0;
+    }
+
+    /**
+     * Close user connections, so clients reconnect with updated permissions
+     */
+    public static void refreshUser(long userId) {
+        Set<AsyncSocket> sockets = USER_SOCKETS.get(userId);
+        if (sockets != null) {
+            for (AsyncSocket socket : sockets) {
+                Session session = socket.getSession();
+                if (session != null) {
+                    session.close(StatusCode.NORMAL, "Permissions changed");
+                }
+            }
+        }
+    }
+
+    @Override
+    public void onWebSocketConnect(Session session) {
+        super.onWebSocketConnect(session);
+        CONNECTIONS.incrementAndGet();
+
+        Set<AsyncSocket> sockets = USER_SOCKETS.get(userId);
+        if (sockets == null) {
+            sockets = Collections.newSetFromMap(new ConcurrentHashMap<AsyncSocket, Boolean>());
+            Set<AsyncSocket> existingSockets = USER_SOCKETS.putIfAbsent(userId, sockets);
+            if (existingSockets != null) {
+                sockets = existingSockets;
+            }
+        }
+        sockets.add(this);
+
+        // Listener is registered first so no update is missed, lock keeps updates from being replaced by older state
+        synchronized (this) {
+            Context.getConnectionManager().addListener(devices, this);
+            for (Position position : Context.getConnectionManager().getInitialState(devices)) {
+                onUpdate(position);
+            }
+        }
+    }
+
+    @Override
+    public void onWebSocketClose(int statusCode, String reason) {
+        Context.getConnectionManager().removeListener(devices, this);
+        Set<AsyncSocket> sockets = USER_SOCKETS.get(userId);
+        if (sockets != null) {
+            sockets.remove(this);
+        }
+        CONNECTIONS.decrementAndGet();
+        super.onWebSocketClose(statusCode, reason);
+    }
+
+    @Override
+    public synchronized void onUpdate(Position position) {
+        if (positions.isEmpty()) {
+            pendingTime = System.nanoTime();
+        }
+        positions.put(position.getDeviceId(), position);
+        if (!busy) {
+            busy = true;
+            AsyncServlet.DISPATCH_EXECUTOR.execute(sendTask);
+        }
+    }
+
+    private final Runnable sendTask = new Runnable() {
+        @Override
+        public void run() {
+            send();
+        }
+    };
+
+    /**
+     * Socket stays busy until the write callback, which schedules the next message if more updates are pending
+     */
+    private void sendCompleted() {
+        synchronized (this) {
+            if (positions.isEmpty()) {
+                busy = false;
+                return;
+            }
+        }
+        AsyncServlet.DISPATCH_EXECUTOR.execute(sendTask);
+    }
+
+    private void send() {
+        Collection<Position> snapshot;
+        final long startTime;
+        synchronized (this) {
+            if (positions.isEmpty() || !isConnected()) {
+                busy = false;
+                return;
+            }
+            snapshot = positions.values();
+            startTime = pendingTime;
+            positions = new HashMap<>();
+        }
+
+        StringWriter writer = new StringWriter();
+        try {
+            AsyncServlet.writePositions(writer, "{\"positions\":", snapshot);
+        } catch (IOException error) {
+            Log.warning(error);
+        }
+
+        final String message = writer.toString();
+        getRemote().sendString(message, new WriteCallback() {
+            @Override
+            public void writeSuccess() {
+                MESSAGES.incrementAndGet();
+                BYTES_SENT.addAndGet(message.getBytes(StandardCharsets.UTF_8).length);
+                LATENCY_TOTAL.addAndGet(System.nanoTime() - startTime);
+                sendCompleted();
+            }
+
+            @Override
+            public void writeFailed(Throwable error) {
+                Log.warning(error.getMessage());
+                sendCompleted();
+            }
+        });
+    }
+
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2015 Anton Tananaev (anton.tananaev@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.web;
+
+import java.io.IOException;
+import javax.servlet.http.HttpSession;
+import org.eclipse.jetty.websocket.common.extensions.compress.PerMessageDeflateExtension;
+import org.eclipse.jetty.websocket.servlet.ServletUpgradeRequest;
+import org.eclipse.jetty.websocket.servlet.ServletUpgradeResponse;
+import org.eclipse.jetty.websocket.servlet.WebSocketCreator;
+import org.eclipse.jetty.websocket.servlet.WebSocketServlet;
+import org.eclipse.jetty.websocket.servlet.WebSocketServletFactory;
+import org.traccar.helper.Log;
+
+public class AsyncSocketServlet extends WebSocketServlet {
+
+    private final boolean compression;
+
+    public AsyncSocketServlet(boolean compression) {
+        this.compression = compression;
+    }
+
+    @Override
+    public void configure(WebSocketServletFactory factory) {
+        if (compression) {
+            // Not registered by default in this Jetty version
+            factory.getExtensionFactory().register("permessage-deflate", PerMessageDeflateExtension.class);
+        }
+        factory.setCreator(new WebSocketCreator() {
+            @Override
+            public Object createWebSocket(ServletUpgradeRequest req, ServletUpgradeResponse resp) {
+                HttpSession session = req.getSession();
+                Long userId = null;
+                if (session != null) {
+                    userId = (Long) session.getAttribute(BaseServlet.USER_KEY);
+                }
+                if (userId == null) {
+                    try {
+                        resp.sendForbidden("User not logged in");
+                    } catch (IOException error) {
+                        Log.warning(error);
+                    }
+                    return null;
+                }
+                return new AsyncSocket(
+                        userId, AsyncServlet.getDevices(userId, req.getHttpServletRequest().getParameter("deviceIds")));
+            }
+        });
+    }
+
+}
@@ -20,9 +20,11 @@ import org.traccar.helper.Log;
 import java.io.IOException;
 import java.io.Writer;
 import java.security.AccessControlException;
+import java.util.Collection;
 import javax.json.Json;
 import javax.json.JsonObjectBuilder;
 import javax.json.JsonStructure;
+import javax.json.stream.JsonGenerator;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
@@ -73,10 +75,36 @@ public abstract class BaseServlet extends HttpServlet {
     }
 
     public void sendResponse(Writer writer, JsonStructure json) throws IOException {
-        JsonObjectBuilder result = Json.createObjectBuilder();
-        result.add("success", true);
-        result.add("data", json);
-        writer.write(result.build().toString());
+        try (JsonGenerator generator = JsonConverter.createGenerator(writer)) {
+            generator.writeStartObject();
+            generator.write("success", true);
+            generator.write("data", json);
+            generator.writeEnd();
+        }
+    }
+
+    public void sendObjectResponse(Writer writer, Object object) throws IOException {
+        try (JsonGenerator generator = JsonConverter.createGenerator(writer)) {
+            generator.writeStartObject();
+            generator.write("success", true);
+            generator.writeStartObject("data");
+            JsonConverter.writeObjectFields(generator, object);
+            generator.writeEnd();
+            generator.writeEnd();
+        }
+    }
+
+    public void sendArrayResponse(Writer writer, Collection<?> array) throws IOException {
+        try (JsonGenerator generator = JsonConverter.createGenerator(writer)) {
+            generator.writeStartObject();
+            generator.write("success", true);
+            generator.writeStartArray("data");
+            for (Object object : array) {
+                JsonConverter.writeObject(generator, object);
+            }
+            generator.writeEnd();
+            generator.writeEnd();
+        }
     }
 
     public void sendResponse(Writer writer, Exception error) throws IOException {
@@ -53,8 +53,8 @@ public class DeviceServlet extends BaseServlet {
     private void get(HttpServletRequest req, HttpServletResponse resp) throws Exception {
         if (Boolean.parseBoolean(req.getParameter("all"))) {
             Context.getPermissionsManager().checkAdmin(getUserId(req));
-            sendResponse(resp.getWriter(), JsonConverter.arrayToJson(
-                    Context.getDataManager().getAllDevices()));
+            sendArrayResponse(resp.getWriter(),
+                    Context.getDataManager().getAllDevices());
         } else {
             long userId;
             String userIdParam = req.getParameter("userId");
@@ -64,8 +64,8 @@ public class DeviceServlet extends BaseServlet {
                 userId = getUserId(req);
             }
             Context.getPermissionsManager().checkUser(getUserId(req), userId);
-            sendResponse(resp.getWriter(), JsonConverter.arrayToJson(
-                    Context.getDataManager().getDevices(userId)));
+            sendArrayResponse(resp.getWriter(),
+                    Context.getDataManager().getDevices(userId));
         }
     }
 
@@ -74,8 +74,8 @@ public class DeviceServlet extends BaseServlet {
         long userId = getUserId(req);
         Context.getDataManager().addDevice(device);
         Context.getDataManager().linkDevice(userId, device.getId());
-        Context.getPermissionsManager().refresh();
-        sendResponse(resp.getWriter(), JsonConverter.objectToJson(device));
+        Context.getPermissionsManager().addPermission(userId, device.getId());
+        sendObjectResponse(resp.getWriter(), device);
     }
 
     private void update(HttpServletRequest req, HttpServletResponse resp) throws Exception {
@@ -89,25 +89,25 @@ public class DeviceServlet extends BaseServlet {
         Device device = JsonConverter.objectFromJson(req.getReader(), new Device());
         Context.getPermissionsManager().checkDevice(getUserId(req), device.getId());
         Context.getDataManager().removeDevice(device);
-        Context.getPermissionsManager().refresh();
+        Context.getPermissionsManager().removeDevice(device.getId());
         sendResponse(resp.getWriter(), true);
     }
 
     private void link(HttpServletRequest req, HttpServletResponse resp) throws Exception {
         Context.getPermissionsManager().checkAdmin(getUserId(req));
-        Context.getDataManager().linkDevice(
-                Long.parseLong(req.getParameter("userId")),
-                Long.parseLong(req.getParameter("deviceId")));
-        Context.getPermissionsManager().refresh();
+        long userId = Long.parseLong(req.getParameter("userId"));
+        long deviceId = Long.parseLong(req.getParameter("deviceId"));
+        Context.getDataManager().linkDevice(userId, deviceId);
+        Context.getPermissionsManager().addPermission(userId, deviceId);
         sendResponse(resp.getWriter(), true);
     }
 
     private void unlink(HttpServletRequest req, HttpServletResponse resp) throws Exception {
         Context.getPermissionsManager().checkAdmin(getUserId(req));
-        Context.getDataManager().unlinkDevice(
-                Long.parseLong(req.getParameter("userId")),
-                Long.parseLong(req.getParameter("deviceId")));
-        Context.getPermissionsManager().refresh();
+        long userId = Long.parseLong(req.getParameter("userId"));
+        long deviceId = Long.parseLong(req.getParameter("deviceId"));
+        Context.getDataManager().unlinkDevice(userId, deviceId);
+        Context.getPermissionsManager().removePermission(userId, deviceId);
         sendResponse(resp.getWriter(), true);
     }
 
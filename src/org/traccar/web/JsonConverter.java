@@ -15,14 +15,17 @@
  */
 package org.traccar.web;
 
-import java.beans.Introspector;
 import java.io.Reader;
 import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
+import java.io.Writer;
 import java.text.ParseException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import javax.json.Json;
 import javax.json.JsonArray;
 import javax.json.JsonArrayBuilder;
@@ -30,11 +33,15 @@ import javax.json.JsonObject;
 import javax.json.JsonObjectBuilder;
 import javax.json.JsonReader;
 import javax.json.JsonValue;
+import javax.json.stream.JsonGenerator;
+import javax.json.stream.JsonGeneratorFactory;
 
 import org.joda.time.DateTime;
 import org.joda.time.format.DateTimeFormatter;
 import org.joda.time.format.ISODateTimeFormat;
 import org.traccar.helper.Log;
+import org.traccar.helper.ModelIntrospector;
+import org.traccar.helper.ModelIntrospector.Property;
 import org.traccar.model.Factory;
 import org.traccar.model.MiscFormatter;
 
@@ -55,39 +62,62 @@ public final class JsonConverter {
         }
     }
 
-    public static <T extends Factory> T objectFromJson(JsonObject json, T prototype) {
-        T object = (T) prototype.create();
+    private static final JsonGeneratorFactory GENERATOR_FACTORY = Json.createGeneratorFactory(null);
 
-        Method[] methods = object.getClass().getMethods();
+    // Getters marked with JsonIgnore are filtered once per class
+    private static final ConcurrentMap<Class<?>, Property[]> GETTERS = new ConcurrentHashMap<>();
 
-        for (final Method method : methods) {
-            if (method.getName().startsWith("set") && method.getParameterTypes().length == 1) {
+    private static Property[] getGetters(Class<?> clazz) {
+        Property[] properties = GETTERS.get(clazz);
+        if (properties == null) {
+            List<Property> list = new ArrayList<>();
+            for (Property property : ModelIntrospector.getGetters(clazz)) {
+                if (!property.getMethod().isAnnotationPresent(JsonIgnore.class)) {
+                    list.add(property);
+                }
+            }
+            properties = list.toArray(new Property[list.size()]);
+            GETTERS.putIfAbsent(clazz, properties);
+        }
+        return properties;
+    }
 
-                final String name = Introspector.decapitalize(method.getName().substring(3));
-                Class<?> parameterType = method.getParameterTypes()[0];
+    public static <T extends Factory> T objectFromJson(JsonObject json, T prototype) {
+        T object = (T) prototype.create();
 
-                if (json.containsKey(name)) {
-                    try {
-                        if (parameterType.equals(boolean.class)) {
-                            method.invoke(object, json.getBoolean(name));
-                        } else if (parameterType.equals(int.class)) {
-                            method.invoke(object, json.getJsonNumber(name).intValue());
-                        } else if (parameterType.equals(long.class)) {
+        for (Property property : ModelIntrospector.getSetters(object.getClass())) {
+            String name = property.getName();
+            if (json.containsKey(name)) {
+                try {
+                    switch (property.getType()) {
+                        case BOOLEAN:
+                            property.getMethod().invoke(object, json.getBoolean(name));
+                            break;
+                        case INTEGER:
+                            property.getMethod().invoke(object, json.getJsonNumber(name).intValue());
+                            break;
+                        case LONG:
                             if (json.get(name).getValueType() == JsonValue.ValueType.NUMBER) {
-                                method.invoke(object, json.getJsonNumber(name).longValue());
+                                property.getMethod().invoke(object, json.getJsonNumber(name).longValue());
                             }
-                        } else if (parameterType.equals(double.class)) {
-                            method.invoke(object, json.getJsonNumber(name).doubleValue());
-                        } else if (parameterType.equals(String.class)) {
-                            method.invoke(object, json.getString(name));
-                        } else if (parameterType.equals(Date.class)) {
-                            method.invoke(object, DATE_FORMAT.parseDateTime(json.getString(name)).toDate());
-                        } else if (parameterType.equals(Map.class)) {
-                            method.invoke(object, MiscFormatter.fromJson(json.getJsonObject(name)));
-                        }
-                    } catch (IllegalAccessException | InvocationTargetException error) {
-                        Log.warning(error);
+                            break;
+                        case DOUBLE:
+                            property.getMethod().invoke(object, json.getJsonNumber(name).doubleValue());
+                            break;
+                        case STRING:
+                            property.getMethod().invoke(object, json.getString(name));
+                            break;
+                        case DATE:
+                            property.getMethod().invoke(object, parseDate(json.getString(name)));
+                            break;
+                        case MAP:
+                            property.getMethod().invoke(object, MiscFormatter.fromJson(json.getJsonObject(name)));
+                            break;
+                        default:
+                            break;
                     }
+                } catch (IllegalAccessException | InvocationTargetException error) {
+                    Log.warning(error);
                 }
             }
         }
@@ -99,39 +129,41 @@ public final class JsonConverter {
 
         JsonObjectBuilder json = Json.createObjectBuilder();
 
-        Method[] methods = object.getClass().getMethods();
-
-        for (Method method : methods) {
-            if (method.isAnnotationPresent(JsonIgnore.class)) {
-                continue;
-            }
-            if (method.getName().startsWith("get") && method.getParameterTypes().length == 0) {
-                String name = Introspector.decapitalize(method.getName().substring(3));
-                try {
-                    if (method.getReturnType().equals(boolean.class)) {
-                        json.add(name, (Boolean) method.invoke(object));
-                    } else if (method.getReturnType().equals(int.class)) {
-                        json.add(name, (Integer) method.invoke(object));
-                    } else if (method.getReturnType().equals(long.class)) {
-                        json.add(name, (Long) method.invoke(object));
-                    } else if (method.getReturnType().equals(double.class)) {
-                        json.add(name, (Double) method.invoke(object));
-                    } else if (method.getReturnType().equals(String.class)) {
-                        String value = (String) method.invoke(object);
+        for (Property property : getGetters(object.getClass())) {
+            String name = property.getName();
+            try {
+                Object value = property.getMethod().invoke(object);
+                switch (property.getType()) {
+                    case BOOLEAN:
+                        json.add(name, (Boolean) value);
+                        break;
+                    case INTEGER:
+                        json.add(name, (Integer) value);
+                        break;
+                    case LONG:
+                        json.add(name, (Long) value);
+                        break;
+                    case DOUBLE:
+                        json.add(name, (Double) value);
+                        break;
+                    case STRING:
                         if (value != null) {
-                            json.add(name, value);
+                            json.add(name, (String) value);
                         }
-                    } else if (method.getReturnType().equals(Date.class)) {
-                        Date value = (Date) method.invoke(object);
+                        break;
+                    case DATE:
                         if (value != null) {
                             json.add(name, DATE_FORMAT.print(new DateTime(value)));
                         }
-                    } else if (method.getReturnType().equals(Map.class)) {
-                        json.add(name, MiscFormatter.toJson((Map) method.invoke(object)));
-                    }
-                } catch (IllegalAccessException | InvocationTargetException error) {
-                    Log.warning(error);
+                        break;
+                    case MAP:
+                        json.add(name, MiscFormatter.toJson((Map) value));
+                        break;
+                    default:
+                        break;
                 }
+            } catch (IllegalAccessException | InvocationTargetException error) {
+                Log.warning(error);
             }
         }
 
@@ -149,4 +181,59 @@ public final class JsonConverter {
         return json.build();
     }
 
+    public static JsonGenerator createGenerator(Writer writer) {
+        return GENERATOR_FACTORY.createGenerator(writer);
+    }
+
+    /**
+     * Write object fields directly to the generator, without building intermediate JSON tree
+     */
+    public static void writeObject(JsonGenerator generator, Object object) {
+        generator.writeStartObject();
+        writeObjectFields(generator, object);
+        generator.writeEnd();
+    }
+
+    static void writeObjectFields(JsonGenerator generator, Object object) {
+        for (Property property : getGetters(object.getClass())) {
+            String name = property.getName();
+            try {
+                Object value = property.getMethod().invoke(object);
+                switch (property.getType()) {
+                    case BOOLEAN:
+                        generator.write(name, (Boolean) value);
+                        break;
+                    case INTEGER:
+                        generator.write(name, (Integer) value);
+                        break;
+                    case LONG:
+                        generator.write(name, (Long) value);
+                        break;
+                    case DOUBLE:
+                        generator.write(name, (Double) value);
+                        break;
+                    case STRING:
+                        if (value != null) {
+                            generator.write(name, (String) value);
+                        }
+                        break;
+                    case DATE:
+                        if (value != null) {
+                            generator.write(name, DATE_FORMAT.print(new DateTime(value)));
+                        }
+                        break;
+                    case MAP:
+                        if (value != null) {
+                            generator.write(name, MiscFormatter.toJson((Map<String, Object>) value));
+                        }
+                        break;
+                    default:
+                        break;
+                }
+            } catch (IllegalAccessException | InvocationTargetException error) {
+                Log.warning(error);
+            }
+        }
+    }
+
 }
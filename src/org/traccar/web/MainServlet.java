@@ -47,8 +47,8 @@ public class MainServlet extends BaseServlet {
     private void session(HttpServletRequest req, HttpServletResponse resp) throws Exception {
         Long userId = (Long) req.getSession().getAttribute(USER_KEY);
         if (userId != null) {
-            sendResponse(resp.getWriter(), JsonConverter.objectToJson(
-                    Context.getDataManager().getUser(userId)));
+            sendObjectResponse(resp.getWriter(),
+                    Context.getDataManager().getUser(userId));
         } else {
             sendResponse(resp.getWriter(), false);
         }
@@ -59,7 +59,7 @@ public class MainServlet extends BaseServlet {
                 req.getParameter("email"), req.getParameter("password"));
         if (user != null) {
             req.getSession().setAttribute(USER_KEY, user.getId());
-            sendResponse(resp.getWriter(), JsonConverter.objectToJson(user));
+            sendObjectResponse(resp.getWriter(), user);
         } else {
             sendResponse(resp.getWriter(), false);
         }
@@ -73,6 +73,7 @@ public class MainServlet extends BaseServlet {
     private void register(HttpServletRequest req, HttpServletResponse resp) throws Exception {
         User user = JsonConverter.objectFromJson(req.getReader(), new User());
         Context.getDataManager().addUser(user);
+        Context.getPermissionsManager().updateUser(user);
         sendResponse(resp.getWriter(), true);
     }
 
@@ -15,17 +15,27 @@
  */
 package org.traccar.web;
 
+import java.io.IOException;
+import java.io.Writer;
+import java.sql.SQLException;
+import javax.json.stream.JsonGenerator;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import org.traccar.Context;
+import org.traccar.database.ResultHandler;
+import org.traccar.helper.Log;
+import org.traccar.helper.TrackSimplifier;
 import org.traccar.model.MiscFormatter;
 import org.traccar.model.Position;
 
+import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
 
 public class PositionServlet extends BaseServlet {
 
+    private static final int DEFAULT_MAX_PAGE_SIZE = 10000;
+
     @Override
     protected boolean handle(String command, HttpServletRequest req, HttpServletResponse resp) throws Exception {
 
@@ -42,14 +52,97 @@ public class PositionServlet extends BaseServlet {
         return true;
     }
 
+    /**
+     * Positions are written as they are read from the database. With "limit" parameter the result is a page,
+     * next page is requested with "afterTime" and "afterId" of the last received position. Track is simplified
+     * if "tolerance" in meters or map "zoom" level is provided.
+     */
     private void get(HttpServletRequest req, HttpServletResponse resp) throws Exception {
-        long deviceId = Long.parseLong(req.getParameter("deviceId"));
+        final long deviceId = Long.parseLong(req.getParameter("deviceId"));
         Context.getPermissionsManager().checkDevice(getUserId(req), deviceId);
-        sendResponse(resp.getWriter(), JsonConverter.arrayToJson(
-                    Context.getDataManager().getPositions(
-                            getUserId(req), deviceId,
-                            JsonConverter.parseDate(req.getParameter("from")),
-                            JsonConverter.parseDate(req.getParameter("to")))));
+
+        int limit = 0;
+        if (req.getParameter("limit") != null) {
+            int maxPageSize = Context.getConfig().getInteger("web.maxPageSize", DEFAULT_MAX_PAGE_SIZE);
+            limit = Integer.parseInt(req.getParameter("limit"));
+            if (limit <= 0 || limit > maxPageSize) {
+                limit = maxPageSize;
+            }
+        }
+
+        Date afterTime = null;
+        long afterId = 0;
+        if (req.getParameter("afterTime") != null) {
+            afterTime = JsonConverter.parseDate(req.getParameter("afterTime"));
+            afterId = Long.parseLong(req.getParameter("afterId"));
+        }
+
+        double tolerance = 0;
+        if (req.getParameter("tolerance") != null) {
+            tolerance = Double.parseDouble(req.getParameter("tolerance"));
+        } else if (req.getParameter("zoom") != null) {
+            tolerance = TrackSimplifier.zoomToTolerance(Integer.parseInt(req.getParameter("zoom")));
+        }
+
+        final long userId = getUserId(req);
+        final Date from = JsonConverter.parseDate(req.getParameter("from"));
+        final Date to = JsonConverter.parseDate(req.getParameter("to"));
+        final Date queryAfterTime = afterTime;
+        final long queryAfterId = afterId;
+        final int queryLimit = limit;
+
+        writePositions(resp.getWriter(), tolerance, new PositionQuery() {
+            @Override
+            public void execute(ResultHandler<Position> handler) throws SQLException, IOException {
+                Context.getDataManager().getPositions(
+                        userId, deviceId, from, to, queryAfterTime, queryAfterId, queryLimit, handler);
+            }
+        });
+    }
+
+    interface PositionQuery {
+        void execute(ResultHandler<Position> handler) throws SQLException, IOException;
+    }
+
+    /**
+     * Stream query results as the data array. Result flag is written after the array, so if the database fails
+     * midway the response is still valid JSON with positions received so far and the error.
+     */
+    static void writePositions(Writer writer, double tolerance, PositionQuery query) throws IOException {
+        try (JsonGenerator generator = JsonConverter.createGenerator(writer)) {
+            generator.writeStartObject();
+            generator.writeStartArray("data");
+
+            ResultHandler<Position> handler = new ResultHandler<Position>() {
+                @Override
+                public void handle(Position position) {
+                    JsonConverter.writeObject(generator, position);
+                }
+            };
+            TrackSimplifier simplifier = null;
+            if (tolerance > 0) {
+                simplifier = new TrackSimplifier(handler, tolerance);
+                handler = simplifier;
+            }
+
+            SQLException error = null;
+            try {
+                query.execute(handler);
+                if (simplifier != null) {
+                    simplifier.finish();
+                }
+            } catch (SQLException e) {
+                error = e;
+            }
+
+            generator.writeEnd();
+            generator.write("success", error == null);
+            if (error != null) {
+                Log.warning(error);
+                generator.write("error", Log.exceptionStack(error));
+            }
+            generator.writeEnd();
+        }
     }
 
     private void devices(HttpServletRequest req, HttpServletResponse resp) throws Exception {
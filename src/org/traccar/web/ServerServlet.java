@@ -15,9 +15,17 @@
  */
 package org.traccar.web;
 
+import java.util.Map;
+import javax.json.Json;
+import javax.json.JsonObjectBuilder;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import org.traccar.Context;
+import org.traccar.DatagramDispatcher;
+import org.traccar.GlobalChannelFactory;
+import org.traccar.database.QueryBuilder;
+import org.traccar.geocode.AddressCache;
+import org.traccar.geocode.JsonReverseGeocoder;
 import org.traccar.model.Server;
 
 public class ServerServlet extends BaseServlet {
@@ -32,6 +40,9 @@ public class ServerServlet extends BaseServlet {
             case "/update":
                 update(req, resp);
                 break;
+            case "/statistics":
+                statistics(req, resp);
+                break;
             default:
                 return false;
         }
@@ -39,8 +50,8 @@ public class ServerServlet extends BaseServlet {
     }
 
     private void get(HttpServletResponse resp) throws Exception {
-        sendResponse(resp.getWriter(), JsonConverter.objectToJson(
-                    Context.getDataManager().getServer()));
+        sendObjectResponse(resp.getWriter(),
+                    Context.getDataManager().getServer());
     }
 
     private void update(HttpServletRequest req, HttpServletResponse resp) throws Exception {
@@ -50,4 +61,60 @@ public class ServerServlet extends BaseServlet {
         sendResponse(resp.getWriter(), true);
     }
 
+    private void statistics(HttpServletRequest req, HttpServletResponse resp) throws Exception {
+        Context.getPermissionsManager().checkAdmin(getUserId(req));
+        JsonObjectBuilder result = Json.createObjectBuilder();
+        result.add("activeDevices", Context.getConnectionManager().getActiveDeviceCount());
+        if (Context.getPositionSpool() != null) {
+            result.add("spoolSize", Context.getPositionSpool().getSize());
+            result.add("spoolUsedBytes", Context.getPositionSpool().getUsedBytes());
+            result.add("spoolCapacity", Context.getPositionSpool().getCapacity());
+        }
+        if (Context.getPositionWriter() != null) {
+            result.add("writerQueueSize", Context.getPositionWriter().getQueueSize());
+            result.add("writerQueueCapacity", Context.getPositionWriter().getQueueCapacity());
+            result.add("writerInFlight", Context.getPositionWriter().getInFlight());
+        }
+        result.add("queryCacheHits", QueryBuilder.getQueryCacheHits());
+        result.add("queryCacheMisses", QueryBuilder.getQueryCacheMisses());
+        result.add("cachedStatements", Context.getDataManager().getCachedStatements());
+        result.add("datagramsDropped", DatagramDispatcher.getDroppedCount());
+        result.add("channelFactories", getChannelFactoryStatistics());
+        result.add("socketConnections", AsyncSocket.getConnectionCount());
+        result.add("socketMessages", AsyncSocket.getMessageCount());
+        result.add("socketBytesSent", AsyncSocket.getBytesSent());
+        result.add("socketLatency", AsyncSocket.getAverageLatency());
+        if (Context.getReverseGeocoder() instanceof JsonReverseGeocoder) {
+            AddressCache cache = ((JsonReverseGeocoder) Context.getReverseGeocoder()).getCache();
+            if (cache != null) {
+                result.add("geocoderCacheSize", cache.size());
+                result.add("geocoderCacheHits", cache.getHits());
+                result.add("geocoderCacheMisses", cache.getMisses());
+                result.add("geocoderCacheEvictions", cache.getEvictions());
+            }
+        }
+        sendResponse(resp.getWriter(), result.build());
+    }
+
+    private static JsonObjectBuilder getChannelFactoryStatistics() {
+        Map<String, Integer> openChannels = null;
+        if (Context.getServerManager() != null) {
+            openChannels = Context.getServerManager().getOpenChannels();
+        }
+        JsonObjectBuilder result = Json.createObjectBuilder();
+        for (String name : GlobalChannelFactory.getFactoryNames()) {
+            JsonObjectBuilder factory = Json.createObjectBuilder();
+            factory.add("bossThreads", GlobalChannelFactory.getBossThreads(name));
+            factory.add("workerThreads", GlobalChannelFactory.getServerWorkerThreads(name));
+            factory.add("datagramWorkerThreads", GlobalChannelFactory.getDatagramWorkerThreads(name));
+            if (openChannels != null && openChannels.containsKey(name)) {
+                factory.add("openChannels", openChannels.get(name));
+            } else {
+                factory.add("openChannels", 0);
+            }
+            result.add(name, factory);
+        }
+        return result;
+    }
+
 }
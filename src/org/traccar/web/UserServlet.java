@@ -46,16 +46,16 @@ public class UserServlet extends BaseServlet {
 
     private void get(HttpServletRequest req, HttpServletResponse resp) throws Exception {
         Context.getPermissionsManager().checkAdmin(getUserId(req));
-        sendResponse(resp.getWriter(), JsonConverter.arrayToJson(
-                    Context.getDataManager().getUsers()));
+        sendArrayResponse(resp.getWriter(),
+                    Context.getDataManager().getUsers());
     }
 
     private void add(HttpServletRequest req, HttpServletResponse resp) throws Exception {
         User user = JsonConverter.objectFromJson(req.getReader(), new User());
         Context.getPermissionsManager().checkUser(getUserId(req), user.getId());
         Context.getDataManager().addUser(user);
-        Context.getPermissionsManager().refresh();
-        sendResponse(resp.getWriter(), JsonConverter.objectToJson(user));
+        Context.getPermissionsManager().updateUser(user);
+        sendObjectResponse(resp.getWriter(), user);
     }
 
     private void update(HttpServletRequest req, HttpServletResponse resp) throws Exception {
@@ -66,7 +66,7 @@ public class UserServlet extends BaseServlet {
             Context.getPermissionsManager().checkUser(getUserId(req), user.getId());
         }
         Context.getDataManager().updateUser(user);
-        Context.getPermissionsManager().refresh();
+        Context.getPermissionsManager().updateUser(user);
         sendResponse(resp.getWriter(), true);
     }
 
@@ -74,7 +74,7 @@ public class UserServlet extends BaseServlet {
         User user = JsonConverter.objectFromJson(req.getReader(), new User());
         Context.getPermissionsManager().checkUser(getUserId(req), user.getId());
         Context.getDataManager().removeUser(user);
-        Context.getPermissionsManager().refresh();
+        Context.getPermissionsManager().removeUser(user.getId());
         sendResponse(resp.getWriter(), true);
     }
 
@@ -103,6 +103,8 @@ public class WebServer {
         servletHandler.getSessionHandler().getSessionManager().getSessionCookieConfig().setMaxAge(86400*365);
         servletHandler.setContextPath("/api");
         servletHandler.addServlet(new ServletHolder(new AsyncServlet()), "/async/*");
+        servletHandler.addServlet(new ServletHolder(
+                new AsyncSocketServlet(config.getBoolean("web.socketCompression"))), "/socket");
         servletHandler.addServlet(new ServletHolder(new ServerServlet()), "/server/*");
         servletHandler.addServlet(new ServletHolder(new UserServlet()), "/user/*");
         servletHandler.addServlet(new ServletHolder(new DeviceServlet()), "/device/*");
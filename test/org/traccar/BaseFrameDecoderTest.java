@@ -0,0 +1,53 @@
+package org.traccar;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.junit.Assert;
+import org.junit.Test;
+import org.traccar.helper.ChannelBufferTools;
+
+public class BaseFrameDecoderTest {
+
+    private final BaseFrameDecoder decoder = new BaseFrameDecoder() {
+        @Override
+        protected Object decode(ChannelHandlerContext ctx, Channel channel, ChannelBuffer buf) throws Exception {
+            return null;
+        }
+    };
+
+    private ChannelBuffer binary(String data) {
+        return ChannelBuffers.wrappedBuffer(ChannelBufferTools.convertHexString(data));
+    }
+
+    @Test
+    public void testReadFrame() {
+
+        ChannelBuffer buf = binary("787804130601000d0a78780413");
+
+        ChannelBuffer frame = decoder.readFrame(buf, 2, 1, 2);
+        Assert.assertEquals(binary("787804130601000d0a"), frame);
+        Assert.assertEquals(binary("78780413"), buf);
+
+        Assert.assertNull(decoder.readFrame(buf, 2, 1, 2));
+        Assert.assertEquals(4, buf.readableBytes());
+
+        Assert.assertNull(decoder.readFrame(binary("2424"), 2, 2, -4));
+        Assert.assertEquals(binary("24240006aabb"), decoder.readFrame(binary("24240006aabbcc"), 2, 2, -4));
+
+    }
+
+    @Test
+    public void testSliceSharesContent() {
+
+        ChannelBuffer buf = binary("0102030405");
+        buf.skipBytes(1);
+
+        ChannelBuffer frame = decoder.readFrame(buf, 3);
+        Assert.assertEquals(binary("020304"), frame);
+        Assert.assertSame(buf.array(), frame.array());
+
+    }
+
+}
@@ -0,0 +1,130 @@
+package org.traccar;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.channel.AbstractChannel;
+import org.jboss.netty.channel.AbstractChannelSink;
+import org.jboss.netty.channel.ChannelConfig;
+import org.jboss.netty.channel.ChannelEvent;
+import org.jboss.netty.channel.ChannelPipeline;
+import org.jboss.netty.channel.Channels;
+import org.jboss.netty.channel.DefaultChannelConfig;
+import org.jboss.netty.channel.MessageEvent;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.traccar.protocol.Gps103Protocol;
+
+public class DatagramDispatcherTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final BlockingQueue<MessageEvent> written = new LinkedBlockingQueue<>();
+
+    private static class TestChannel extends AbstractChannel {
+
+        private final ChannelConfig config = new DefaultChannelConfig();
+
+        public TestChannel(ChannelPipeline pipeline, AbstractChannelSink sink) {
+            super(null, null, pipeline, sink);
+        }
+
+        @Override
+        public ChannelConfig getConfig() {
+            return config;
+        }
+
+        @Override
+        public boolean isBound() {
+            return true;
+        }
+
+        @Override
+        public boolean isConnected() {
+            return false;
+        }
+
+        @Override
+        public SocketAddress getLocalAddress() {
+            return new InetSocketAddress(5001);
+        }
+
+        @Override
+        public SocketAddress getRemoteAddress() {
+            return null;
+        }
+
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        Properties properties = new Properties();
+        properties.setProperty("web.type", "old");
+        properties.setProperty("gps103.udpThreads", "2");
+        File file = folder.newFile("config.xml");
+        try (OutputStream outputStream = new FileOutputStream(file)) {
+            properties.storeToXML(outputStream, null);
+        }
+        Config config = new Config();
+        config.load(file.getPath());
+        Context.init(config, null, null);
+    }
+
+    @After
+    public void tearDown() {
+        GlobalChannelFactory.release();
+    }
+
+    @Test
+    public void testResponseEncoded() throws Exception {
+
+        List<TrackerServer> servers = new ArrayList<>();
+        new Gps103Protocol().initTrackerServers(servers);
+        TrackerServer server = servers.get(1);
+        Assert.assertTrue(server.isConnectionless());
+
+        ChannelPipeline pipeline = server.getPipelineFactory().getPipeline();
+        Assert.assertNotNull(pipeline.get("dispatcher"));
+        Assert.assertNull(pipeline.get("stringEncoder"));
+
+        TestChannel channel = new TestChannel(pipeline, new AbstractChannelSink() {
+            @Override
+            public void eventSunk(ChannelPipeline pipeline, ChannelEvent e) {
+                if (e instanceof MessageEvent) {
+                    written.add((MessageEvent) e);
+                }
+            }
+        });
+        Channels.fireChannelOpen(channel);
+
+        SocketAddress remoteAddress = new InetSocketAddress("127.0.0.1", 5002);
+        Channels.fireMessageReceived(channel, ChannelBuffers.copiedBuffer(
+                "123456789012345", StandardCharsets.US_ASCII), remoteAddress);
+
+        MessageEvent event = written.poll(5, TimeUnit.SECONDS);
+        Assert.assertNotNull(event);
+        Assert.assertTrue(event.getMessage() instanceof ChannelBuffer);
+        Assert.assertEquals("ON", ((ChannelBuffer) event.getMessage()).toString(StandardCharsets.US_ASCII));
+        Assert.assertEquals(remoteAddress, event.getRemoteAddress());
+
+        Channels.fireChannelClosed(channel);
+
+    }
+
+}
@@ -0,0 +1,237 @@
+package org.traccar;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.Channels;
+import org.jboss.netty.channel.MessageEvent;
+import org.jboss.netty.channel.SimpleChannelDownstreamHandler;
+import org.jboss.netty.channel.local.DefaultLocalClientChannelFactory;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.traccar.database.DataManager;
+import org.traccar.database.IdentityManager;
+import org.traccar.database.PositionWriter;
+import org.traccar.helper.ChannelBufferTools;
+import org.traccar.model.Device;
+import org.traccar.model.Position;
+import org.traccar.protocol.TeltonikaProtocol;
+import org.traccar.protocol.TeltonikaProtocolDecoder;
+
+public class DefaultDataHandlerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Config config;
+    private IdentityManager identityManager;
+    private Channel channel;
+    private final BlockingQueue<Object> responses = new LinkedBlockingQueue<>();
+
+    private static class TestDataManager extends DataManager {
+
+        private final boolean generatedKeys;
+        private final List<Position> stored = new ArrayList<>();
+        private final List<Position> latest = new ArrayList<>();
+
+        public TestDataManager(Config config, boolean generatedKeys) throws Exception {
+            super(config);
+            this.generatedKeys = generatedKeys;
+        }
+
+        @Override
+        public Device getDeviceByUniqueId(String uniqueId) {
+            Device device = new Device();
+            device.setId(1);
+            device.setUniqueId(uniqueId);
+            return device;
+        }
+
+        @Override
+        public synchronized void addPositions(Collection<Position> positions) {
+            for (Position position : positions) {
+                if (generatedKeys) {
+                    position.setId(stored.size() + 1);
+                }
+                stored.add(position);
+            }
+        }
+
+        @Override
+        public synchronized void updateLatestPositions(Collection<Position> positions) {
+            latest.addAll(positions);
+        }
+
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        Properties properties = new Properties();
+        properties.setProperty("web.type", "old");
+        properties.setProperty("teltonika.durableAck", "true");
+        properties.setProperty("writer.queueSize", "1");
+        File file = folder.newFile("config.xml");
+        try (OutputStream outputStream = new FileOutputStream(file)) {
+            properties.storeToXML(outputStream, null);
+        }
+        config = new Config();
+        config.load(file.getPath());
+
+        identityManager = Context.getIdentityManager();
+
+        channel = new DefaultLocalClientChannelFactory().newChannel(Channels.pipeline(
+                new SimpleChannelDownstreamHandler() {
+                    @Override
+                    public void writeRequested(ChannelHandlerContext ctx, MessageEvent e) {
+                        responses.add(e.getMessage());
+                    }
+                }));
+    }
+
+    @After
+    public void tearDown() {
+        Context.init(config, null, null);
+        Context.init(identityManager);
+    }
+
+    private static Position position(long deviceId, long time) {
+        Position position = new Position();
+        position.setDeviceId(deviceId);
+        position.setFixTime(new Date(time));
+        return position;
+    }
+
+    private static PositionBatch batch() {
+        return new PositionBatch(Arrays.asList(position(1, 1000), position(1, 2000), position(2, 1000)));
+    }
+
+    /**
+     * Decode Teltonika message and pass it through the filter and data handlers like the pipeline does
+     */
+    private void decode(FilterHandler filterHandler, DefaultDataHandler dataHandler) throws Exception {
+        BaseProtocolDecoder decoder = new TeltonikaProtocolDecoder(new TeltonikaProtocol());
+        decoder.decode(channel, null, ChannelBuffers.wrappedBuffer(ChannelBufferTools.convertHexString(
+                "000F313233343536373839303132333435")));
+        Assert.assertNotNull(responses.poll()); // identification response
+
+        Object message = decoder.decode(channel, null, ChannelBuffers.wrappedBuffer(
+                ChannelBufferTools.convertHexString("000000000000003508010000014f8e016420002141bbaf0f4e96a7fffa"
+                + "0000120000000602010047030242669c920000" + "02c7000000009100000000000100002df3")));
+        Assert.assertTrue(message instanceof PositionBatch);
+        Assert.assertTrue(responses.isEmpty());
+
+        message = filterHandler.decode(null, channel, message);
+        if (message != null) {
+            dataHandler.decode(null, channel, message);
+        }
+    }
+
+    @Test
+    public void testDurableAckWithoutWriter() throws Exception {
+
+        TestDataManager dataManager = new TestDataManager(config, true);
+        Context.init(config, dataManager, null);
+
+        decode(new FilterHandler(false, false, false, false, 0, 0), new DefaultDataHandler());
+
+        Assert.assertEquals(1, dataManager.stored.size());
+        Assert.assertNotNull(responses.poll());
+
+    }
+
+    @Test
+    public void testDurableAckWithWriter() throws Exception {
+
+        TestDataManager dataManager = new TestDataManager(config, true);
+        PositionWriter writer = new PositionWriter(dataManager, null, config);
+        Context.init(config, dataManager, writer);
+        writer.start();
+        try {
+            decode(new FilterHandler(false, false, false, false, 0, 0), new DefaultDataHandler());
+            Assert.assertNotNull(responses.poll(5, TimeUnit.SECONDS));
+            synchronized (dataManager) {
+                Assert.assertEquals(1, dataManager.stored.size());
+            }
+        } finally {
+            writer.stop();
+        }
+
+    }
+
+    @Test
+    public void testDurableAckFiltered() throws Exception {
+
+        TestDataManager dataManager = new TestDataManager(config, true);
+        Context.init(config, dataManager, null);
+
+        // Distance filter drops the only position, response is sent as there is nothing to store
+        Context.getConnectionManager().update(position(1, 0));
+        decode(new FilterHandler(false, false, false, false, 100000000, 0), new DefaultDataHandler());
+
+        Assert.assertTrue(dataManager.stored.isEmpty());
+        Assert.assertNotNull(responses.poll());
+
+    }
+
+    @Test
+    public void testWriterQueueFull() throws Exception {
+
+        TestDataManager dataManager = new TestDataManager(config, true);
+        PositionWriter writer = new PositionWriter(dataManager, null, config);
+        Context.init(config, dataManager, writer);
+
+        // Queue holds one position, so none of the two is queued and response is withheld
+        DeferredResponse response = new DeferredResponse(channel, null, "response");
+        PositionBatch batch = new PositionBatch(Arrays.asList(position(1, 1000), position(1, 2000)), response);
+        Assert.assertNull(new DefaultDataHandler().decode(null, channel, batch));
+
+        Assert.assertEquals(0, writer.getQueueSize());
+        Assert.assertEquals(0, writer.getInFlight());
+        Assert.assertTrue(response.isDone());
+        Assert.assertTrue(responses.isEmpty());
+
+    }
+
+    @Test
+    public void testBatchWithoutWriter() throws Exception {
+
+        TestDataManager dataManager = new TestDataManager(config, true);
+        Context.init(config, dataManager, null);
+
+        Assert.assertNotNull(new DefaultDataHandler().decode(null, null, batch()));
+        Assert.assertEquals(3, dataManager.stored.size());
+        Assert.assertEquals(2, dataManager.latest.size());
+        Assert.assertEquals(2, dataManager.latest.get(0).getId());
+        Assert.assertEquals(3, dataManager.latest.get(1).getId());
+
+    }
+
+    @Test
+    public void testBatchWithoutKeys() throws Exception {
+
+        TestDataManager dataManager = new TestDataManager(config, false);
+        Context.init(config, dataManager, null);
+
+        Assert.assertNotNull(new DefaultDataHandler().decode(null, null, batch()));
+        Assert.assertEquals(3, dataManager.stored.size());
+        Assert.assertTrue(dataManager.latest.isEmpty());
+
+    }
+
+}
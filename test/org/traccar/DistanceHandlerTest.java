@@ -1,5 +1,7 @@
 package org.traccar;
 
+import java.util.Arrays;
+import java.util.Date;
 import org.junit.Test;
 import org.traccar.model.Event;
 import org.traccar.model.Position;
@@ -19,4 +21,26 @@ public class DistanceHandlerTest {
 
     }
 
+    @Test
+    public void testCalculateDistanceBatch() throws Exception {
+
+        DistanceHandler distanceHandler = new DistanceHandler();
+
+        Position first = new Position();
+        first.setTime(new Date(1000));
+        Position second = new Position();
+        second.setTime(new Date(2000));
+        second.setLatitude(0.001);
+        Position third = new Position();
+        third.setTime(new Date(3000));
+        third.setLatitude(0.002);
+
+        distanceHandler.decode(null, null, new PositionBatch(Arrays.asList(first, second, third)));
+
+        assertEquals(0.0, first.getAttributes().get(Event.KEY_DISTANCE));
+        assertEquals(111.32, second.getAttributes().get(Event.KEY_DISTANCE));
+        assertEquals(222.64, third.getAttributes().get(Event.KEY_DISTANCE));
+
+    }
+
 }
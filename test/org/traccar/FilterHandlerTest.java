@@ -1,7 +1,9 @@
 package org.traccar;
 
+import java.util.Arrays;
 import java.util.Date;
 import org.junit.After;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import org.junit.Before;
@@ -66,4 +68,22 @@ public class FilterHandlerTest {
         assertNotNull(passingHandler.decode(null, null, position));
     }
 
+    @Test
+    public void testFilterBatch() throws Exception {
+
+        Date time = new Date();
+        Position first = createPosition(0, time, true, 10, 10, 10, 10, 10);
+        Position duplicate = createPosition(0, time, true, 10, 10, 10, 10, 10);
+        Position invalid = createPosition(0, new Date(time.getTime() + 5), false, 20, 20, 10, 10, 10);
+        Position next = createPosition(0, new Date(time.getTime() + 2000), true, 20, 20, 10, 10, 10);
+
+        PositionBatch batch = (PositionBatch) filtingHandler.decode(
+                null, null, new PositionBatch(Arrays.asList(first, duplicate, invalid, next)));
+
+        assertEquals(Arrays.asList(first, next), batch.getPositions());
+        assertEquals(4, ((PositionBatch) passingHandler.decode(
+                null, null, new PositionBatch(Arrays.asList(first, duplicate, invalid, next)))).size());
+
+    }
+
 }
@@ -0,0 +1,56 @@
+package org.traccar;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.TreeSet;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class GlobalChannelFactoryTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @After
+    public void tearDown() {
+        GlobalChannelFactory.release();
+    }
+
+    @Test
+    public void testFactoryStatistics() throws Exception {
+
+        Properties properties = new Properties();
+        properties.setProperty("web.type", "old");
+        properties.setProperty("server.workerThreads", "2");
+        properties.setProperty("teltonika.workerThreads", "3");
+        File file = folder.newFile("config.xml");
+        try (OutputStream outputStream = new FileOutputStream(file)) {
+            properties.storeToXML(outputStream, null);
+        }
+        Config config = new Config();
+        config.load(file.getPath());
+        Context.init(config, null, null);
+
+        GlobalChannelFactory.getFactory("teltonika");
+        GlobalChannelFactory.getDatagramFactory("gps103");
+
+        Assert.assertEquals(new TreeSet<>(Arrays.asList("shared", "teltonika")),
+                GlobalChannelFactory.getFactoryNames());
+
+        Assert.assertEquals(1, GlobalChannelFactory.getBossThreads("teltonika"));
+        Assert.assertEquals(3, GlobalChannelFactory.getServerWorkerThreads("teltonika"));
+        Assert.assertEquals(0, GlobalChannelFactory.getDatagramWorkerThreads("teltonika"));
+
+        Assert.assertEquals(0, GlobalChannelFactory.getBossThreads("shared"));
+        Assert.assertEquals(0, GlobalChannelFactory.getServerWorkerThreads("shared"));
+        Assert.assertEquals(2, GlobalChannelFactory.getDatagramWorkerThreads("shared"));
+
+    }
+
+}
@@ -0,0 +1,184 @@
+package org.traccar.database;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.Channels;
+import org.jboss.netty.channel.local.DefaultLocalClientChannelFactory;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.traccar.model.Position;
+
+public class ConnectionManagerTest {
+
+    private static final int DEVICES = 100000;
+    private static final int CHANNELS = 1000;
+    private static final int THREADS = 8;
+
+    private ConnectionManager connectionManager;
+    private Channel[] channels;
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        connectionManager = new ConnectionManager(null);
+        DefaultLocalClientChannelFactory channelFactory = new DefaultLocalClientChannelFactory();
+        channels = new Channel[CHANNELS];
+        for (int i = 0; i < CHANNELS; i++) {
+            channels[i] = channelFactory.newChannel(Channels.pipeline());
+        }
+        executor = Executors.newFixedThreadPool(THREADS);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private interface Task {
+        void run(int thread) throws Exception;
+    }
+
+    private void runConcurrently(final Task task) throws Exception {
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            final int thread = i;
+            futures.add(executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    task.run(thread);
+                    return null;
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+    }
+
+    @Test
+    public void testActiveDevices() throws Exception {
+
+        runConcurrently(new Task() {
+            @Override
+            public void run(int thread) {
+                for (int i = thread; i < DEVICES; i += THREADS) {
+                    connectionManager.setActiveDevice(i, null, channels[i % CHANNELS], null);
+                    connectionManager.setActiveDevice(i, null, channels[i % CHANNELS], null);
+                }
+            }
+        });
+
+        Assert.assertEquals(DEVICES, connectionManager.getActiveDeviceCount());
+        ActiveDevice activeDevice = connectionManager.getActiveDevice(12345);
+        connectionManager.setActiveDevice(12345, null, channels[12345 % CHANNELS], null);
+        Assert.assertSame(activeDevice, connectionManager.getActiveDevice(12345));
+
+        // Move even devices to odd channels
+        runConcurrently(new Task() {
+            @Override
+            public void run(int thread) {
+                for (int i = thread * 2; i < DEVICES; i += THREADS * 2) {
+                    connectionManager.setActiveDevice(i, null, channels[(i + 1) % CHANNELS], null);
+                }
+            }
+        });
+
+        for (int i = 0; i < DEVICES; i++) {
+            Assert.assertSame(channels[(i | 1) % CHANNELS], connectionManager.getActiveDevice(i).getChannel());
+        }
+
+        // Even channels are empty now
+        runConcurrently(new Task() {
+            @Override
+            public void run(int thread) {
+                for (int i = thread * 2; i < CHANNELS; i += THREADS * 2) {
+                    connectionManager.removeActiveDevice(channels[i]);
+                }
+            }
+        });
+
+        Assert.assertEquals(DEVICES, connectionManager.getActiveDeviceCount());
+
+        runConcurrently(new Task() {
+            @Override
+            public void run(int thread) {
+                for (int i = thread; i < CHANNELS; i += THREADS) {
+                    connectionManager.removeActiveDevice(channels[i]);
+                }
+            }
+        });
+
+        Assert.assertEquals(0, connectionManager.getActiveDeviceCount());
+
+    }
+
+    @Test
+    public void testRemoveRace() throws Exception {
+
+        final ExecutorService closeExecutor = Executors.newFixedThreadPool(THREADS);
+
+        // Devices are registered while their channels are closed and removed concurrently
+        runConcurrently(new Task() {
+            @Override
+            public void run(int thread) throws Exception {
+                for (int i = thread; i < CHANNELS; i += THREADS) {
+                    final Channel channel = channels[i];
+                    Future<?> close = closeExecutor.submit(new Runnable() {
+                        @Override
+                        public void run() {
+                            channel.close().awaitUninterruptibly();
+                            connectionManager.removeActiveDevice(channel);
+                        }
+                    });
+                    for (int j = 0; j < 10; j++) {
+                        connectionManager.setActiveDevice(i * 10 + j, null, channel, null);
+                    }
+                    close.get();
+                }
+            }
+        });
+        closeExecutor.shutdown();
+
+        for (int i = 0; i < CHANNELS * 10; i++) {
+            Assert.assertNull(connectionManager.getActiveDevice(i));
+        }
+        Assert.assertEquals(0, connectionManager.getActiveDeviceCount());
+
+    }
+
+    @Test
+    public void testLastPosition() throws Exception {
+
+        final int updates = 10;
+
+        runConcurrently(new Task() {
+            @Override
+            public void run(int thread) {
+                for (int j = 0; j < updates; j++) {
+                    for (int i = 0; i < DEVICES; i += 100) {
+                        Position position = new Position();
+                        position.setDeviceId(i);
+                        position.setFixTime(new Date(i * 1000L + j * THREADS + thread));
+                        connectionManager.update(position);
+                    }
+                }
+            }
+        });
+
+        for (int i = 0; i < DEVICES; i += 100) {
+            Assert.assertEquals(
+                    i * 1000L + (updates - 1) * THREADS + THREADS - 1,
+                    connectionManager.getLastPosition(i).getFixTime().getTime());
+        }
+
+    }
+
+}
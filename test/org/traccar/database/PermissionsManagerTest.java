@@ -0,0 +1,135 @@
+package org.traccar.database;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.traccar.Config;
+import org.traccar.model.Permission;
+import org.traccar.model.User;
+
+public class PermissionsManagerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static class TestDataManager extends DataManager {
+
+        public TestDataManager(Config config) throws Exception {
+            super(config);
+        }
+
+        @Override
+        public Collection<User> getUsers() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public Collection<Permission> getPermissions() {
+            List<Permission> permissions = new ArrayList<>();
+            for (long deviceId : new long[] {30, 10, 20}) {
+                Permission permission = new Permission();
+                permission.setUserId(1);
+                permission.setDeviceId(deviceId);
+                permissions.add(permission);
+            }
+            return permissions;
+        }
+
+    }
+
+    private PermissionsManager createPermissionsManager() throws Exception {
+        Properties properties = new Properties();
+        properties.setProperty("web.type", "old");
+        File file = folder.newFile("config.xml");
+        try (OutputStream outputStream = new FileOutputStream(file)) {
+            properties.storeToXML(outputStream, null);
+        }
+        Config config = new Config();
+        config.load(file.getPath());
+        return new PermissionsManager(new TestDataManager(config));
+    }
+
+    @Test
+    public void testAllowedDevices() throws Exception {
+
+        PermissionsManager permissionsManager = createPermissionsManager();
+
+        List<Long> devices = (List<Long>) permissionsManager.allowedDevices(1);
+        Assert.assertEquals(Long.valueOf(10), devices.get(0));
+        Assert.assertTrue(devices.contains(20L));
+        Assert.assertFalse(devices.contains(25L));
+        Assert.assertFalse(devices.contains(20));
+        Assert.assertEquals(2, devices.indexOf(30L));
+        Assert.assertEquals(-1, devices.indexOf(40L));
+        Assert.assertSame(devices, permissionsManager.allowedDevices(1));
+        Assert.assertTrue(permissionsManager.allowedDevices(2).isEmpty());
+
+        permissionsManager.addPermission(1, 15);
+        Assert.assertTrue(permissionsManager.allowedDevices(1).contains(15L));
+        Assert.assertFalse(devices.contains(15L));
+
+        permissionsManager.removeDevice(20);
+        Assert.assertFalse(permissionsManager.allowedDevices(1).contains(20L));
+        permissionsManager.checkDevice(1, 15);
+
+    }
+
+    private static Object getMap(PermissionsManager permissionsManager, String name) throws Exception {
+        Field field = PermissionsManager.class.getDeclaredField(name);
+        field.setAccessible(true);
+        return field.get(permissionsManager);
+    }
+
+    @Test
+    public void testUnchanged() throws Exception {
+
+        PermissionsManager permissionsManager = createPermissionsManager();
+
+        Object permissions = getMap(permissionsManager, "permissions");
+        permissionsManager.removePermission(1, 25);
+        permissionsManager.removePermission(2, 10);
+        permissionsManager.addPermission(1, 10);
+        permissionsManager.removeDevice(25);
+        permissionsManager.removeUser(3);
+        Assert.assertSame(permissions, getMap(permissionsManager, "permissions"));
+
+        User user = new User();
+        user.setId(1);
+        user.setAdmin(true);
+        permissionsManager.updateUser(user);
+        Object users = getMap(permissionsManager, "users");
+        User sameUser = new User();
+        sameUser.setId(1);
+        sameUser.setAdmin(true);
+        permissionsManager.updateUser(sameUser);
+        Assert.assertSame(users, getMap(permissionsManager, "users"));
+        permissionsManager.checkAdmin(1);
+
+        User changedUser = new User();
+        changedUser.setId(1);
+        permissionsManager.updateUser(changedUser);
+        Assert.assertNotSame(users, getMap(permissionsManager, "users"));
+        try {
+            permissionsManager.checkAdmin(1);
+            Assert.fail();
+        } catch (SecurityException error) {
+            Assert.assertEquals("Admin access required", error.getMessage());
+        }
+
+        permissionsManager.removePermission(1, 20);
+        Assert.assertNotSame(permissions, getMap(permissionsManager, "permissions"));
+        Assert.assertFalse(permissionsManager.allowedDevices(1).contains(20L));
+
+    }
+
+}
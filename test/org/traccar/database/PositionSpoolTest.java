@@ -0,0 +1,122 @@
+package org.traccar.database;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Properties;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.traccar.Config;
+import org.traccar.model.Position;
+
+public class PositionSpoolTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Config config;
+    private File spoolFile;
+
+    @Before
+    public void setUp() throws Exception {
+        spoolFile = new File(folder.getRoot(), "positions.spool");
+        Properties properties = new Properties();
+        properties.setProperty("spool.file", spoolFile.getPath());
+        properties.setProperty("spool.size", "1");
+        properties.setProperty("spool.batchSize", "100");
+        File file = folder.newFile("config.xml");
+        try (OutputStream outputStream = new FileOutputStream(file)) {
+            properties.storeToXML(outputStream, null);
+        }
+        config = new Config();
+        config.load(file.getPath());
+    }
+
+    private Position createPosition(long deviceId) {
+        Position position = new Position();
+        position.setDeviceId(deviceId);
+        position.setTime(new Date(deviceId * 1000));
+        return position;
+    }
+
+    private List<Position> replay(PositionSpool spool) {
+        List<Position> positions = new ArrayList<>();
+        Assert.assertTrue(spool.commit(spool.read(positions)));
+        return positions;
+    }
+
+    @Test
+    public void testWrapAround() throws Exception {
+
+        PositionSpool spool = new PositionSpool(null, config);
+
+        long written = 0;
+        while (spool.write(createPosition(written))) {
+            written++;
+        }
+        Assert.assertEquals(written, spool.getSize());
+
+        // Partial replay releases space at the beginning, new positions wrap around the end of the file
+        long replayed = 0;
+        for (int i = 0; i < 3; i++) {
+            for (Position position : replay(spool)) {
+                Assert.assertEquals(replayed++, position.getDeviceId());
+            }
+        }
+        int added = 0;
+        while (spool.write(createPosition(written))) {
+            written++;
+            added++;
+        }
+        Assert.assertTrue(added >= 250);
+
+        while (spool.getSize() > 0) {
+            for (Position position : replay(spool)) {
+                Assert.assertEquals(replayed++, position.getDeviceId());
+            }
+        }
+        Assert.assertEquals(written, replayed);
+        Assert.assertEquals(0, spool.getUsedBytes());
+
+        spool.stop();
+
+    }
+
+    @Test
+    public void testCorruptedRecord() throws Exception {
+
+        PositionSpool spool = new PositionSpool(null, config);
+        for (int i = 0; i < 3; i++) {
+            Assert.assertTrue(spool.write(createPosition(i)));
+        }
+        spool.stop();
+
+        try (RandomAccessFile file = new RandomAccessFile(spoolFile, "rw")) {
+            int first = file.readInt(); // read offset
+            file.seek(first);
+            int length = file.readInt();
+            file.seek(first + 4 + length);
+            file.writeInt(0);
+        }
+
+        spool = new PositionSpool(null, config);
+        Assert.assertEquals(1, spool.getSize());
+        List<Position> positions = replay(spool);
+        Assert.assertEquals(1, positions.size());
+        Assert.assertEquals(0, spool.getSize());
+
+        Assert.assertTrue(spool.write(createPosition(3)));
+        Assert.assertEquals(3, replay(spool).get(0).getDeviceId());
+
+        spool.stop();
+
+    }
+
+}
@@ -0,0 +1,163 @@
+package org.traccar.database;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Properties;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.Channels;
+import org.jboss.netty.channel.MessageEvent;
+import org.jboss.netty.channel.SimpleChannelDownstreamHandler;
+import org.jboss.netty.channel.local.DefaultLocalClientChannelFactory;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.traccar.Config;
+import org.traccar.DeferredResponse;
+import org.traccar.model.Position;
+
+public class PositionWriterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final List<Object> responses = new ArrayList<>();
+
+    private Config config;
+    private Channel channel;
+
+    private static class TestDataManager extends DataManager {
+
+        private final boolean failing;
+        private final List<Position> stored = new ArrayList<>();
+
+        public TestDataManager(Config config, boolean failing) throws Exception {
+            super(config);
+            this.failing = failing;
+        }
+
+        @Override
+        public synchronized void addPositions(Collection<Position> positions) throws SQLException {
+            if (failing) {
+                throw new SQLException("Database is not available");
+            }
+            stored.addAll(positions);
+        }
+
+        @Override
+        public void updateLatestPositions(Collection<Position> positions) {
+        }
+
+    }
+
+    @Before
+    public void setUp() throws Exception {
+
+        Properties properties = new Properties();
+        properties.setProperty("web.type", "old");
+        properties.setProperty("writer.batchSize", "1");
+        properties.setProperty("writer.flushInterval", "10");
+        properties.setProperty("writer.highWatermark", "2");
+        properties.setProperty("writer.lowWatermark", "1");
+        File file = folder.newFile("config.xml");
+        try (OutputStream outputStream = new FileOutputStream(file)) {
+            properties.storeToXML(outputStream, null);
+        }
+        config = new Config();
+        config.load(file.getPath());
+
+        channel = new DefaultLocalClientChannelFactory().newChannel(Channels.pipeline(
+                new SimpleChannelDownstreamHandler() {
+                    @Override
+                    public void writeRequested(ChannelHandlerContext ctx, MessageEvent e) {
+                        synchronized (responses) {
+                            responses.add(e.getMessage());
+                        }
+                    }
+                }));
+    }
+
+    private Position createPosition(long time) {
+        Position position = new Position();
+        position.setDeviceId(1);
+        position.setTime(new Date(time));
+        return position;
+    }
+
+    private DeferredResponse writeMessage(PositionWriter writer, String response, long... times) {
+        DeferredResponse deferredResponse = new DeferredResponse(channel, null, response);
+        deferredResponse.expect(times.length);
+        for (long time : times) {
+            Assert.assertTrue(writer.write(createPosition(time), true, deferredResponse));
+        }
+        return deferredResponse;
+    }
+
+    @Test
+    public void testResponseAfterCommit() throws Exception {
+
+        TestDataManager dataManager = new TestDataManager(config, false);
+        PositionWriter writer = new PositionWriter(dataManager, null, config);
+
+        writer.start();
+        DeferredResponse first = writeMessage(writer, "first", 1000, 2000, 3000);
+        DeferredResponse second = writeMessage(writer, "second", 4000);
+        writer.stop();
+
+        Assert.assertTrue(first.isDone());
+        Assert.assertTrue(second.isDone());
+        Assert.assertEquals(4, dataManager.stored.size());
+        Assert.assertEquals(0, writer.getInFlight());
+
+        List<Object> expected = new ArrayList<>();
+        expected.add("first");
+        expected.add("second");
+        Assert.assertEquals(expected, responses);
+
+    }
+
+    @Test
+    public void testOverload() throws Exception {
+
+        TestDataManager dataManager = new TestDataManager(config, false);
+        PositionWriter writer = new PositionWriter(dataManager, null, config);
+
+        for (int i = 0; i < 3; i++) {
+            Assert.assertTrue(writer.write(createPosition(i * 1000), true));
+        }
+        Assert.assertTrue(writer.isOverloaded());
+
+        writer.start();
+        writer.stop();
+
+        Assert.assertEquals(3, dataManager.stored.size());
+        Assert.assertFalse(writer.isOverloaded());
+
+    }
+
+    @Test
+    public void testNoResponseOnFailure() throws Exception {
+
+        TestDataManager dataManager = new TestDataManager(config, true);
+        PositionWriter writer = new PositionWriter(dataManager, null, config);
+
+        writer.start();
+        DeferredResponse response = writeMessage(writer, "response", 1000, 2000);
+        Assert.assertTrue(writer.write(createPosition(3000), true));
+        writer.stop();
+
+        Assert.assertTrue(response.isDone());
+        Assert.assertTrue(responses.isEmpty());
+        Assert.assertEquals(0, writer.getInFlight());
+
+    }
+
+}
@@ -0,0 +1,210 @@
+package org.traccar.database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.Date;
+import java.util.List;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.Assert;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.traccar.model.Position;
+
+public class QueryBuilderTest {
+
+    private static final int ROWS = 200000;
+
+    // Attributes are left out, their JSON parsing costs the same in both mappings and hides accessor overhead
+    private static final String QUERY = "SELECT id, protocol, deviceId, serverTime, deviceTime, fixTime, valid, "
+            + "latitude, longitude, altitude, speed, course, address FROM position ORDER BY fixTime";
+
+    private static final String QUERY_ALL = "SELECT * FROM position ORDER BY fixTime";
+
+    private interface Mapping {
+        int run(JdbcDataSource dataSource) throws Exception;
+    }
+
+    private static JdbcDataSource createDataSource() throws SQLException {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1");
+        try (Connection connection = dataSource.getConnection()) {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("CREATE TABLE position (id INT PRIMARY KEY AUTO_INCREMENT, protocol VARCHAR(128), "
+                        + "deviceId INT NOT NULL, serverTime TIMESTAMP NOT NULL, deviceTime TIMESTAMP NOT NULL, "
+                        + "fixTime TIMESTAMP NOT NULL, valid BIT NOT NULL, latitude FLOAT NOT NULL, "
+                        + "longitude FLOAT NOT NULL, altitude FLOAT NOT NULL, speed FLOAT NOT NULL, "
+                        + "course FLOAT NOT NULL, address VARCHAR(512), attributes VARCHAR(4096) NOT NULL)");
+            }
+            try (PreparedStatement statement = connection.prepareStatement("INSERT INTO position (protocol, "
+                    + "deviceId, serverTime, deviceTime, fixTime, valid, latitude, longitude, altitude, speed, "
+                    + "course, attributes) VALUES ('osmand', 1, ?, ?, ?, TRUE, ?, ?, 0, 10, 90, ?)")) {
+                for (int i = 0; i < ROWS; i++) {
+                    Timestamp time = new Timestamp(1000000000000L + i * 1000L);
+                    statement.setTimestamp(1, time);
+                    statement.setTimestamp(2, time);
+                    statement.setTimestamp(3, time);
+                    statement.setDouble(4, 40 + i * 0.0001);
+                    statement.setDouble(5, -74 + i * 0.0001);
+                    statement.setString(6, "{\"sat\":8,\"battery\":\"12.5\"}");
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+            }
+        }
+        return dataSource;
+    }
+
+    @Test
+    public void testBatchGeneratedKeys() throws Exception {
+
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:keys;DB_CLOSE_DELAY=-1");
+        try (Connection connection = dataSource.getConnection();
+                Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE item (id INT PRIMARY KEY AUTO_INCREMENT, name VARCHAR(128), time TIMESTAMP)");
+        }
+
+        // Driver may not return keys of batch rows, every batch still has to return keys of all its rows
+        for (int batch = 0; batch < 2; batch++) {
+            QueryBuilder builder = QueryBuilder.create(
+                    dataSource, "INSERT INTO item (name, time) VALUES (:name, :time)", true);
+            for (int i = 0; i < 3; i++) {
+                builder.setString("name", "item" + batch + i);
+                if (i == 1) {
+                    builder.setDate("time", null);
+                } else {
+                    builder.setDate("time", new Date(i * 1000L));
+                }
+                builder.addBatch();
+            }
+            List<Long> keys = builder.executeBatch();
+            Assert.assertEquals(3, keys.size());
+            for (int i = 0; i < 3; i++) {
+                try (Connection connection = dataSource.getConnection();
+                        PreparedStatement statement = connection.prepareStatement(
+                                "SELECT name, time FROM item WHERE id = ?")) {
+                    statement.setLong(1, keys.get(i));
+                    try (ResultSet resultSet = statement.executeQuery()) {
+                        Assert.assertTrue(resultSet.next());
+                        Assert.assertEquals("item" + batch + i, resultSet.getString(1));
+                        if (i == 1) {
+                            Assert.assertNull(resultSet.getTimestamp(2));
+                        } else {
+                            Assert.assertEquals(i * 1000L, resultSet.getTimestamp(2).getTime());
+                        }
+                    }
+                }
+            }
+        }
+
+        try (Connection connection = dataSource.getConnection();
+                Statement statement = connection.createStatement();
+                ResultSet resultSet = statement.executeQuery("SELECT COUNT(*) FROM item")) {
+            Assert.assertTrue(resultSet.next());
+            Assert.assertEquals(6, resultSet.getInt(1));
+        }
+
+    }
+
+    private static void benchmark(String name, JdbcDataSource dataSource, Mapping mapping) throws Exception {
+        long startTime = System.nanoTime();
+        int count = mapping.run(dataSource);
+        long time = (System.nanoTime() - startTime) / 1000000;
+        System.out.println(name + " " + count + " rows " + time + " ms");
+    }
+
+    /**
+     * Compares reflective row mapping with reading columns only and with hand written typed mapping, which is the
+     * upper bound for generated or method handle accessors. History of 200000 positions in in-memory H2.
+     */
+    @Ignore("Benchmark, run manually")
+    @Test
+    public void benchmarkPositionMapping() throws Exception {
+
+        JdbcDataSource dataSource = createDataSource();
+
+        Mapping columns = new Mapping() {
+            @Override
+            public int run(JdbcDataSource dataSource) throws Exception {
+                int count = 0;
+                try (Connection connection = dataSource.getConnection();
+                        PreparedStatement statement = connection.prepareStatement(QUERY);
+                        ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        for (int i = 1; i <= 13; i++) {
+                            resultSet.getObject(i);
+                        }
+                        count++;
+                    }
+                }
+                return count;
+            }
+        };
+
+        Mapping typed = new Mapping() {
+            @Override
+            public int run(JdbcDataSource dataSource) throws Exception {
+                int count = 0;
+                try (Connection connection = dataSource.getConnection();
+                        PreparedStatement statement = connection.prepareStatement(QUERY);
+                        ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        Position position = new Position();
+                        position.setId(resultSet.getLong(1));
+                        position.setProtocol(resultSet.getString(2));
+                        position.setDeviceId(resultSet.getLong(3));
+                        position.setServerTime(new Date(resultSet.getTimestamp(4).getTime()));
+                        position.setDeviceTime(new Date(resultSet.getTimestamp(5).getTime()));
+                        position.setFixTime(new Date(resultSet.getTimestamp(6).getTime()));
+                        position.setValid(resultSet.getBoolean(7));
+                        position.setLatitude(resultSet.getDouble(8));
+                        position.setLongitude(resultSet.getDouble(9));
+                        position.setAltitude(resultSet.getDouble(10));
+                        position.setSpeed(resultSet.getDouble(11));
+                        position.setCourse(resultSet.getDouble(12));
+                        position.setAddress(resultSet.getString(13));
+                        count++;
+                    }
+                }
+                return count;
+            }
+        };
+
+        Mapping reflective = new Mapping() {
+            @Override
+            public int run(JdbcDataSource dataSource) throws Exception {
+                return QueryBuilder.create(dataSource, QUERY).executeQuery(
+                        new Position(), 0, 0, new ResultHandler<Position>() {
+                            @Override
+                            public void handle(Position position) {
+                            }
+                        });
+            }
+        };
+
+        Mapping reflectiveAll = new Mapping() {
+            @Override
+            public int run(JdbcDataSource dataSource) throws Exception {
+                return QueryBuilder.create(dataSource, QUERY_ALL).executeQuery(
+                        new Position(), 0, 0, new ResultHandler<Position>() {
+                            @Override
+                            public void handle(Position position) {
+                            }
+                        });
+            }
+        };
+
+        for (int i = 0; i < 10; i++) {
+            benchmark("columns", dataSource, columns);
+            benchmark("typed", dataSource, typed);
+            benchmark("reflective", dataSource, reflective);
+            benchmark("reflective with attributes", dataSource, reflectiveAll);
+        }
+
+    }
+
+}
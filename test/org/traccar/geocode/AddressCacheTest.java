@@ -0,0 +1,182 @@
+package org.traccar.geocode;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.Assert;
+import org.junit.Ignore;
+import org.junit.Test;
+
+public class AddressCacheTest {
+
+    @Test
+    public void testQuantization() {
+
+        AddressCache cache = new AddressCache(100, 4);
+
+        cache.put(48.85341, 2.34880, "Paris");
+
+        Assert.assertEquals("Paris", cache.get(48.85338, 2.34876));
+        Assert.assertEquals("Paris", cache.get(48.853449, 2.348849));
+        Assert.assertNull(cache.get(48.85351, 2.34880));
+        Assert.assertNull(cache.get(-48.85341, -2.34880));
+
+        cache.put(-48.85341, -2.34880, "South");
+        Assert.assertEquals("South", cache.get(-48.85339, -2.34882));
+        Assert.assertEquals("Paris", cache.get(48.85341, 2.34880));
+
+        Assert.assertEquals(4, cache.getHits());
+        Assert.assertEquals(2, cache.getMisses());
+
+    }
+
+    @Test
+    public void testEviction() {
+
+        AddressCache cache = new AddressCache(3, 2);
+
+        cache.put(1, 1, "a");
+        cache.put(2, 2, "b");
+        cache.put(3, 3, "c");
+        Assert.assertEquals("a", cache.get(1, 1));
+
+        cache.put(4, 4, "d");
+        Assert.assertEquals(3, cache.size());
+        Assert.assertEquals(1, cache.getEvictions());
+        Assert.assertNull(cache.get(2, 2));
+        Assert.assertEquals("a", cache.get(1, 1));
+        Assert.assertEquals("d", cache.get(4, 4));
+
+    }
+
+    @Test
+    public void testSegments() {
+
+        AddressCache cache = new AddressCache(10000, AddressCache.MAX_PRECISION);
+
+        for (int i = 0; i < 20000; i++) {
+            cache.put(i * 0.0001, -180 + i * 0.0001, String.valueOf(i));
+        }
+
+        Assert.assertTrue(cache.size() <= 10000);
+        Assert.assertEquals(20000 - cache.size(), cache.getEvictions());
+        Assert.assertEquals("19999", cache.get(1.9999, -178.0001));
+        Assert.assertNull(cache.get(0, -180));
+
+    }
+
+    private interface Cache {
+        String get(double latitude, double longitude);
+        void put(double latitude, double longitude, String address);
+    }
+
+    private static void benchmark(String name, final Cache cache, final double[] lat, final double[] lon)
+            throws Exception {
+        final int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        final long[] hits = new long[threads];
+        List<Future<?>> futures = new ArrayList<>();
+        long startTime = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            final int thread = t;
+            futures.add(executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = thread; i < lat.length; i += threads) {
+                        if (cache.get(lat[i], lon[i]) != null) {
+                            hits[thread]++;
+                        } else {
+                            cache.put(lat[i], lon[i], "address");
+                        }
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        long time = (System.nanoTime() - startTime) / 1000000;
+        executor.shutdown();
+        long total = 0;
+        for (long value : hits) {
+            total += value;
+        }
+        System.out.println(name + " hit rate " + (100 * total / lat.length) + "% time " + time + " ms");
+    }
+
+    /**
+     * Compares with the previous cache keyed by exact coordinates. Synthetic trace of 1000 devices, 70% of them
+     * parked, with GPS jitter of about 2 meters, read by 8 threads.
+     */
+    @Ignore("Benchmark, run manually")
+    @Test
+    public void benchmarkHitRate() throws Exception {
+
+        Random random = new Random(1);
+        int count = 2000000;
+        int devices = 1000;
+        double[] lat = new double[count];
+        double[] lon = new double[count];
+        double[] deviceLat = new double[devices];
+        double[] deviceLon = new double[devices];
+        for (int d = 0; d < devices; d++) {
+            deviceLat[d] = 40 + random.nextDouble();
+            deviceLon[d] = -74 + random.nextDouble();
+        }
+        for (int i = 0; i < count; i++) {
+            int d = random.nextInt(devices);
+            if (d % 10 >= 7) {
+                deviceLat[d] += 0.0002;
+                deviceLon[d] += 0.0001;
+            }
+            lat[i] = deviceLat[d] + random.nextGaussian() * 0.00002;
+            lon[i] = deviceLon[d] + random.nextGaussian() * 0.00002;
+        }
+
+        final Map<Map.Entry<Double, Double>, String> exact = Collections.synchronizedMap(
+                new LinkedHashMap<Map.Entry<Double, Double>, String>() {
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<Map.Entry<Double, Double>, String> eldest) {
+                        return size() > 10000;
+                    }
+                });
+        Cache exactCache = new Cache() {
+            @Override
+            public String get(double latitude, double longitude) {
+                return exact.get(new AbstractMap.SimpleImmutableEntry<>(latitude, longitude));
+            }
+
+            @Override
+            public void put(double latitude, double longitude, String address) {
+                exact.put(new AbstractMap.SimpleImmutableEntry<>(latitude, longitude), address);
+            }
+        };
+
+        final AddressCache addressCache = new AddressCache(10000, AddressCache.DEFAULT_PRECISION);
+        Cache gridCache = new Cache() {
+            @Override
+            public String get(double latitude, double longitude) {
+                return addressCache.get(latitude, longitude);
+            }
+
+            @Override
+            public void put(double latitude, double longitude, String address) {
+                addressCache.put(latitude, longitude, address);
+            }
+        };
+
+        for (int i = 0; i < 2; i++) {
+            benchmark("exact", exactCache, lat, lon);
+            benchmark("grid", gridCache, lat, lon);
+        }
+
+    }
+
+}
@@ -0,0 +1,51 @@
+package org.traccar.helper;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LongHashMapTest {
+
+    @Test
+    public void testBasic() {
+        LongHashMap<String> map = new LongHashMap<>();
+        Assert.assertTrue(map.isEmpty());
+        Assert.assertNull(map.put(0, "zero"));
+        Assert.assertNull(map.put(-1, "minus"));
+        Assert.assertEquals("zero", map.put(0, "none"));
+        Assert.assertEquals("none", map.get(0));
+        Assert.assertEquals("minus", map.get(-1));
+        Assert.assertNull(map.get(1));
+        Assert.assertEquals(2, map.size());
+        Assert.assertEquals("minus", map.remove(-1));
+        Assert.assertNull(map.remove(-1));
+        Assert.assertFalse(map.containsKey(-1));
+        map.clear();
+        Assert.assertTrue(map.isEmpty());
+        Assert.assertNull(map.get(0));
+    }
+
+    @Test
+    public void testRandom() {
+        Random random = new Random(1);
+        LongHashMap<Long> map = new LongHashMap<>();
+        Map<Long, Long> expected = new HashMap<>();
+        for (int i = 0; i < 200000; i++) {
+            long key = random.nextInt(5000);
+            if (random.nextInt(3) == 0) {
+                Assert.assertEquals(expected.remove(key), map.remove(key));
+            } else {
+                Assert.assertEquals(expected.put(key, (long) i), map.put(key, (long) i));
+            }
+        }
+        Assert.assertEquals(expected.size(), map.size());
+        for (long key = 0; key < 5000; key++) {
+            Assert.assertEquals(expected.get(key), map.get(key));
+        }
+        Assert.assertEquals(expected.size(), map.keys().length);
+        Assert.assertEquals(expected.size(), map.values().size());
+    }
+
+}
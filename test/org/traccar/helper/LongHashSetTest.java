@@ -0,0 +1,49 @@
+package org.traccar.helper;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LongHashSetTest {
+
+    @Test
+    public void testBasic() {
+        LongHashSet set = new LongHashSet();
+        Assert.assertTrue(set.add(0));
+        Assert.assertFalse(set.add(0));
+        Assert.assertTrue(set.add(Long.MAX_VALUE));
+        Assert.assertTrue(set.contains(0));
+        Assert.assertTrue(set.contains(Long.MAX_VALUE));
+        Assert.assertFalse(set.contains(1));
+        long[] values = set.toArray();
+        Arrays.sort(values);
+        Assert.assertArrayEquals(new long[] {0, Long.MAX_VALUE}, values);
+        Assert.assertTrue(set.remove(0));
+        Assert.assertFalse(set.remove(0));
+        Assert.assertEquals(1, set.size());
+    }
+
+    @Test
+    public void testRandom() {
+        Random random = new Random(1);
+        LongHashSet set = new LongHashSet(1);
+        Set<Long> expected = new HashSet<>();
+        for (int i = 0; i < 200000; i++) {
+            long key = random.nextInt(5000) * 1024L;
+            if (random.nextBoolean()) {
+                Assert.assertEquals(expected.remove(key), set.remove(key));
+            } else {
+                Assert.assertEquals(expected.add(key), set.add(key));
+            }
+        }
+        Assert.assertEquals(expected.size(), set.size());
+        for (int key = 0; key < 5000; key++) {
+            Assert.assertEquals(expected.contains(key * 1024L), set.contains(key * 1024L));
+        }
+        Assert.assertEquals(expected, new HashSet<>(set.toList()));
+    }
+
+}
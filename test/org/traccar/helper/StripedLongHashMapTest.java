@@ -0,0 +1,158 @@
+package org.traccar.helper;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.Assert;
+import org.junit.Ignore;
+import org.junit.Test;
+
+public class StripedLongHashMapTest {
+
+    @Test
+    public void testBasic() {
+        StripedLongHashMap<String> map = new StripedLongHashMap<>();
+        String zero = "zero";
+        Assert.assertNull(map.putIfAbsent(0, zero));
+        Assert.assertSame(zero, map.putIfAbsent(0, "none"));
+        Assert.assertFalse(map.replace(0, "other", "none"));
+        Assert.assertTrue(map.replace(0, zero, "none"));
+        Assert.assertEquals("none", map.get(0));
+        Assert.assertFalse(map.remove(0, zero));
+        Assert.assertNull(map.put(-1, "minus"));
+        Assert.assertEquals(2, map.size());
+        Assert.assertEquals(2, map.values().size());
+        Assert.assertEquals("minus", map.remove(-1));
+        Assert.assertNull(map.get(-1));
+        Assert.assertEquals(1, map.size());
+    }
+
+    @Test
+    public void testRandom() {
+        Random random = new Random(1);
+        StripedLongHashMap<Long> map = new StripedLongHashMap<>();
+        Map<Long, Long> expected = new HashMap<>();
+        for (int i = 0; i < 200000; i++) {
+            long key = random.nextInt(5000);
+            if (random.nextInt(3) == 0) {
+                Assert.assertEquals(expected.remove(key), map.remove(key));
+            } else {
+                Assert.assertEquals(expected.put(key, (long) i), map.put(key, (long) i));
+            }
+        }
+        Assert.assertEquals(expected.size(), map.size());
+        for (Map.Entry<Long, Long> entry : expected.entrySet()) {
+            Assert.assertEquals(entry.getValue(), map.get(entry.getKey()));
+        }
+    }
+
+    private interface Lookup {
+        Object get(long key);
+        void put(long key, Object value);
+    }
+
+    private static long usedMemory() {
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+        }
+        return Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory();
+    }
+
+    private static void benchmark(String name, final Lookup lookup, final int size) throws Exception {
+        final int threads = 8;
+        final int operations = 10000000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+        long startTime = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            final int seed = t;
+            futures.add(executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    Random random = new Random(seed);
+                    for (int i = 0; i < operations; i++) {
+                        long key = random.nextInt(size);
+                        // Position updates replace values, most operations are lookups
+                        if (i % 10 == 0) {
+                            lookup.put(key, Boolean.TRUE);
+                        } else {
+                            lookup.get(key);
+                        }
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        long time = (System.nanoTime() - startTime) / 1000000;
+        executor.shutdown();
+        System.out.println(name + " " + threads * operations / time / 1000 + " M operations per second");
+    }
+
+    /**
+     * Compares memory and lookup throughput with ConcurrentHashMap for the per-device maps of 1000000 devices,
+     * 8 threads doing 90% lookups and 10% updates.
+     */
+    @Ignore("Benchmark, run manually")
+    @Test
+    public void benchmarkDeviceMaps() throws Exception {
+
+        int size = 1000000;
+        Object value = new Object();
+
+        long memory = usedMemory();
+        final ConcurrentMap<Long, Object> concurrentMap = new ConcurrentHashMap<>();
+        for (long i = 0; i < size; i++) {
+            concurrentMap.put(i, value);
+        }
+        System.out.println("concurrent " + (usedMemory() - memory) / size + " bytes per entry");
+
+        memory = usedMemory();
+        final StripedLongHashMap<Object> stripedMap = new StripedLongHashMap<>();
+        for (long i = 0; i < size; i++) {
+            stripedMap.put(i, value);
+        }
+        System.out.println("striped " + (usedMemory() - memory) / size + " bytes per entry");
+
+        Lookup concurrentLookup = new Lookup() {
+            @Override
+            public Object get(long key) {
+                return concurrentMap.get(key);
+            }
+
+            @Override
+            public void put(long key, Object value) {
+                concurrentMap.put(key, value);
+            }
+        };
+
+        Lookup stripedLookup = new Lookup() {
+            @Override
+            public Object get(long key) {
+                return stripedMap.get(key);
+            }
+
+            @Override
+            public void put(long key, Object value) {
+                stripedMap.put(key, value);
+            }
+        };
+
+        for (int i = 0; i < 3; i++) {
+            benchmark("concurrent", concurrentLookup, size);
+            benchmark("striped", stripedLookup, size);
+        }
+
+        Assert.assertEquals(concurrentMap.size(), stripedMap.size());
+
+    }
+
+}
@@ -0,0 +1,149 @@
+package org.traccar.helper;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+import org.traccar.database.ResultHandler;
+import org.traccar.model.Event;
+import org.traccar.model.Position;
+
+public class TrackSimplifierTest {
+
+    private final List<Position> result = new ArrayList<>();
+
+    private final ResultHandler<Position> collector = new ResultHandler<Position>() {
+        @Override
+        public void handle(Position position) {
+            result.add(position);
+        }
+    };
+
+    private static Position position(long id, double latitude, double longitude) {
+        Position position = new Position();
+        position.setId(id);
+        position.setLatitude(latitude);
+        position.setLongitude(longitude);
+        return position;
+    }
+
+    /**
+     * Largest distance from input point to the simplified segment covering it, ids are input indexes
+     */
+    private double maxError(List<Position> track) {
+        double error = 0;
+        for (int i = 1; i < result.size(); i++) {
+            Position start = result.get(i - 1);
+            Position end = result.get(i);
+            for (long id = start.getId() + 1; id < end.getId(); id++) {
+                error = Math.max(error, TrackSimplifier.segmentDistance(start, end, track.get((int) id)));
+            }
+        }
+        return error;
+    }
+
+    private void simplify(List<Position> track, double tolerance) throws Exception {
+        TrackSimplifier simplifier = new TrackSimplifier(collector, tolerance);
+        for (Position position : track) {
+            simplifier.handle(position);
+        }
+        simplifier.finish();
+    }
+
+    @Test
+    public void testStraightLine() throws Exception {
+
+        TrackSimplifier simplifier = new TrackSimplifier(collector, 10);
+        for (int i = 0; i < 100; i++) {
+            simplifier.handle(position(i, 0, i * 0.001));
+        }
+        simplifier.finish();
+
+        Assert.assertEquals(2, result.size());
+        Assert.assertEquals(0, result.get(0).getId());
+        Assert.assertEquals(99, result.get(1).getId());
+
+    }
+
+    @Test
+    public void testCorner() throws Exception {
+
+        TrackSimplifier simplifier = new TrackSimplifier(collector, 10);
+        for (int i = 0; i < 10; i++) {
+            simplifier.handle(position(i, 0, i * 0.001));
+        }
+        for (int i = 1; i < 10; i++) {
+            simplifier.handle(position(10 + i, i * 0.001, 0.009));
+        }
+        simplifier.finish();
+
+        Assert.assertEquals(3, result.size());
+        Assert.assertEquals(9, result.get(1).getId());
+
+    }
+
+    @Test
+    public void testStopAndEvents() throws Exception {
+
+        TrackSimplifier simplifier = new TrackSimplifier(collector, 10);
+        for (int i = 0; i < 50; i++) {
+            Position position = position(i, 0.00001 * (i % 3), 0.00001 * (i % 2));
+            if (i == 20) {
+                position.set(Event.KEY_ALARM, "sos");
+            }
+            simplifier.handle(position);
+        }
+        simplifier.finish();
+
+        Assert.assertEquals(3, result.size());
+        Assert.assertEquals(0, result.get(0).getId());
+        Assert.assertEquals(20, result.get(1).getId());
+        Assert.assertEquals(49, result.get(2).getId());
+
+    }
+
+    @Test
+    public void testUTurn() throws Exception {
+
+        // Points are about 111 meters apart, far end is 2 km away
+        List<Position> track = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            track.add(position(track.size(), 0, i * 0.001));
+        }
+        for (int i = 18; i >= 0; i--) {
+            track.add(position(track.size(), 0, i * 0.001));
+        }
+        simplify(track, 500);
+
+        Assert.assertTrue(maxError(track) < 500);
+        Assert.assertTrue(result.size() < track.size());
+        Assert.assertEquals(track.size() - 1, result.get(result.size() - 1).getId());
+
+    }
+
+    @Test
+    public void testToleranceAboveSpacing() throws Exception {
+
+        // Half circle with 1 km radius, points are about 10 meters apart
+        List<Position> track = new ArrayList<>();
+        for (int i = 0; i <= 314; i++) {
+            double angle = i * 0.01;
+            track.add(position(track.size(), 0.009 * Math.sin(angle), 0.009 * Math.cos(angle)));
+        }
+        simplify(track, 50);
+
+        Assert.assertTrue(maxError(track) < 50);
+        Assert.assertTrue(result.size() > 2);
+        Assert.assertTrue(result.size() < track.size() / 10);
+
+    }
+
+    @Test
+    public void testZoomToTolerance() {
+
+        Assert.assertEquals(156543.03, TrackSimplifier.zoomToTolerance(0), 0.01);
+        Assert.assertEquals(0.60, TrackSimplifier.zoomToTolerance(18), 0.01);
+
+    }
+
+}
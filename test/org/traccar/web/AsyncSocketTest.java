@@ -0,0 +1,111 @@
+package org.traccar.web;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.eclipse.jetty.websocket.api.RemoteEndpoint;
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.StatusCode;
+import org.eclipse.jetty.websocket.api.WriteCallback;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.traccar.Context;
+import org.traccar.database.IdentityManager;
+import org.traccar.model.Position;
+
+public class AsyncSocketTest {
+
+    private static final long DEVICE_1 = 1000001;
+    private static final long DEVICE_2 = 1000002;
+
+    private final BlockingQueue<String> messages = new LinkedBlockingQueue<>();
+    private final BlockingQueue<WriteCallback> callbacks = new LinkedBlockingQueue<>();
+
+    private Session session;
+
+    @Before
+    public void setUp() {
+        if (Context.getConnectionManager() == null) {
+            Context.init((IdentityManager) null);
+        }
+
+        final RemoteEndpoint remote = (RemoteEndpoint) Proxy.newProxyInstance(
+                getClass().getClassLoader(), new Class<?>[] {RemoteEndpoint.class}, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if (method.getName().equals("sendString") && args.length == 2) {
+                            messages.add((String) args[0]);
+                            callbacks.add((WriteCallback) args[1]);
+                        }
+                        return null;
+                    }
+                });
+
+        session = (Session) Proxy.newProxyInstance(
+                getClass().getClassLoader(), new Class<?>[] {Session.class}, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        switch (method.getName()) {
+                            case "isOpen":
+                                return true;
+                            case "getRemote":
+                                return remote;
+                            default:
+                                return null;
+                        }
+                    }
+                });
+    }
+
+    private static Position position(long id, long deviceId) {
+        Position position = new Position();
+        position.setId(id);
+        position.setDeviceId(deviceId);
+        position.setFixTime(new Date(id * 1000));
+        return position;
+    }
+
+    @Test
+    public void testCoalescing() throws Exception {
+
+        Context.getConnectionManager().update(position(1, DEVICE_1));
+
+        AsyncSocket socket = new AsyncSocket(1, Arrays.asList(DEVICE_1, DEVICE_2));
+        socket.onWebSocketConnect(session);
+
+        String message = messages.poll(5, TimeUnit.SECONDS);
+        Assert.assertNotNull(message);
+        Assert.assertTrue(message.contains("\"id\":1,"));
+
+        // Updates are held back until the first write completes
+        socket.onUpdate(position(2, DEVICE_2));
+        socket.onUpdate(position(3, DEVICE_2));
+        Assert.assertNull(messages.poll(200, TimeUnit.MILLISECONDS));
+
+        callbacks.take().writeSuccess();
+        message = messages.poll(5, TimeUnit.SECONDS);
+        Assert.assertNotNull(message);
+        Assert.assertFalse(message.contains("\"id\":2,"));
+        Assert.assertTrue(message.contains("\"id\":3,"));
+
+        // Failed write doesn't block following updates
+        callbacks.take().writeFailed(new Exception("Connection reset"));
+        socket.onUpdate(position(4, DEVICE_1));
+        message = messages.poll(5, TimeUnit.SECONDS);
+        Assert.assertNotNull(message);
+        Assert.assertTrue(message.contains("\"id\":4,"));
+
+        callbacks.take().writeSuccess();
+        Assert.assertNull(messages.poll(200, TimeUnit.MILLISECONDS));
+
+        socket.onWebSocketClose(StatusCode.NORMAL, null);
+
+    }
+
+}
@@ -1,8 +1,10 @@
 package org.traccar.web;
 
 import java.io.StringReader;
+import java.io.StringWriter;
 import java.text.ParseException;
 import java.util.Date;
+import javax.json.stream.JsonGenerator;
 import static org.junit.Assert.assertEquals;
 import org.junit.Test;
 import org.traccar.model.Factory;
@@ -30,6 +32,25 @@ public class JsonConverterTest {
 
     }
 
+    @Test
+    public void streamingConversion() {
+
+        Primitives o = new Primitives();
+        o.setBoolean(true);
+        o.setInt(42);
+        o.setLong(1234567890123L);
+        o.setDouble(41.99);
+        o.setDate(new Date(1436468537000L));
+
+        StringWriter writer = new StringWriter();
+        try (JsonGenerator generator = JsonConverter.createGenerator(writer)) {
+            JsonConverter.writeObject(generator, o);
+        }
+
+        assertEquals(JsonConverter.objectToJson(o).toString(), writer.toString());
+
+    }
+
     public static class Primitives implements Factory {
         
         @Override
@@ -0,0 +1,100 @@
+package org.traccar.web;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.sql.SQLException;
+import java.util.Date;
+import java.util.Properties;
+import javax.json.Json;
+import javax.json.JsonObject;
+import javax.json.JsonReader;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.traccar.Config;
+import org.traccar.database.DataManager;
+import org.traccar.database.ResultHandler;
+import org.traccar.model.Position;
+
+public class PositionServletTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static JsonObject writePositions(final int count, final boolean failing) throws IOException {
+        StringWriter writer = new StringWriter();
+        PositionServlet.writePositions(writer, 0, new PositionServlet.PositionQuery() {
+            @Override
+            public void execute(ResultHandler<Position> handler) throws SQLException, IOException {
+                for (int i = 1; i <= count; i++) {
+                    Position position = new Position();
+                    position.setId(i);
+                    position.setFixTime(new Date(i * 1000L));
+                    handler.handle(position);
+                }
+                if (failing) {
+                    throw new SQLException("Connection lost");
+                }
+            }
+        });
+        try (JsonReader reader = Json.createReader(new StringReader(writer.toString()))) {
+            return reader.readObject();
+        }
+    }
+
+    @Test
+    public void testPositions() throws Exception {
+
+        JsonObject result = writePositions(3, false);
+        Assert.assertTrue(result.getBoolean("success"));
+        Assert.assertEquals(3, result.getJsonArray("data").size());
+        Assert.assertFalse(result.containsKey("error"));
+
+    }
+
+    @Test
+    public void testDatabaseError() throws Exception {
+
+        JsonObject result = writePositions(2, true);
+        Assert.assertFalse(result.getBoolean("success"));
+        Assert.assertEquals(2, result.getJsonArray("data").size());
+        Assert.assertTrue(result.getString("error").contains("Connection lost"));
+
+    }
+
+    @Test
+    public void testPageQueryMissing() throws Exception {
+
+        Properties properties = new Properties();
+        properties.setProperty("web.type", "old");
+        properties.setProperty("database.selectPositions", "SELECT * FROM position");
+        File file = folder.newFile("config.xml");
+        try (OutputStream outputStream = new FileOutputStream(file)) {
+            properties.storeToXML(outputStream, null);
+        }
+        Config config = new Config();
+        config.load(file.getPath());
+        final DataManager dataManager = new DataManager(config);
+
+        StringWriter writer = new StringWriter();
+        PositionServlet.writePositions(writer, 0, new PositionServlet.PositionQuery() {
+            @Override
+            public void execute(ResultHandler<Position> handler) throws SQLException, IOException {
+                dataManager.getPositions(1, 1, new Date(0), new Date(), null, 0, 100, handler);
+            }
+        });
+        try (JsonReader reader = Json.createReader(new StringReader(writer.toString()))) {
+            JsonObject result = reader.readObject();
+            Assert.assertFalse(result.getBoolean("success"));
+            Assert.assertTrue(result.getJsonArray("data").isEmpty());
+            Assert.assertTrue(result.getString("error").contains("database.selectPositionsPage"));
+        }
+
+    }
+
+}